@@ -0,0 +1,173 @@
+package com.vaultai.app;
+
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.SecretKeyFactory;
+
+/**
+ * 加解密用到的 JCA 对象缓存。
+ *
+ * Cipher 和 SecretKeyFactory 不是线程安全的，按线程各缓存一份，每次使用前由调用方重新 init；
+ * SecureRandom 是线程安全的，全进程共享一个，避免每条记录都重新播种。
+ * 导出、导入和迁移会在线程池上连续处理成千上万条记录，省掉的 provider 查找和播种开销相当可观。
+ */
+final class CryptoContext {
+    static final String GCM_TRANSFORMATION = "AES/GCM/NoPadding";
+    static final String CBC_TRANSFORMATION = "AES/CBC/PKCS7Padding";
+    static final String PBKDF2_ALGORITHM = "PBKDF2WithHmacSHA256";
+    static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final ThreadLocal<Cipher> GCM = new ThreadLocal<>();
+    private static final ThreadLocal<Cipher> CBC = new ThreadLocal<>();
+    private static final ThreadLocal<SecretKeyFactory> PBKDF2 = new ThreadLocal<>();
+    private static final ThreadLocal<Mac> HMAC = new ThreadLocal<>();
+    private static final ThreadLocal<byte[]> IV = new ThreadLocal<>();
+    private static final ThreadLocal<BufferSlot> SEALED = new ThreadLocal<>();
+    private static final ThreadLocal<BufferSlot> PLAIN = new ThreadLocal<>();
+    // discardBuffers() 时递增，各线程下次取 buffer 时发现变化就先清零
+    private static volatile int bufferEpoch;
+
+    private static final class BufferSlot {
+        ByteBuffer buffer;
+        int epoch;
+    }
+
+    private CryptoContext() {
+    }
+
+    /**
+     * 当前线程的 AES/GCM Cipher。返回的实例处于未知状态，必须先 init。
+     */
+    static Cipher gcm() throws GeneralSecurityException {
+        Cipher cipher = GCM.get();
+        if (cipher == null) {
+            cipher = Cipher.getInstance(GCM_TRANSFORMATION);
+            GCM.set(cipher);
+        }
+        return cipher;
+    }
+
+    /**
+     * 当前线程的 AES/CBC Cipher，仅用于解密旧版记录。
+     */
+    static Cipher cbc() throws GeneralSecurityException {
+        Cipher cipher = CBC.get();
+        if (cipher == null) {
+            cipher = Cipher.getInstance(CBC_TRANSFORMATION);
+            CBC.set(cipher);
+        }
+        return cipher;
+    }
+
+    static SecretKeyFactory pbkdf2() throws GeneralSecurityException {
+        SecretKeyFactory factory = PBKDF2.get();
+        if (factory == null) {
+            factory = SecretKeyFactory.getInstance(PBKDF2_ALGORITHM);
+            PBKDF2.set(factory);
+        }
+        return factory;
+    }
+
+    /**
+     * 当前线程的 HMAC-SHA256，用于主密码校验值。必须先 init。
+     */
+    static Mac hmac() throws GeneralSecurityException {
+        Mac mac = HMAC.get();
+        if (mac == null) {
+            mac = Mac.getInstance(HMAC_ALGORITHM);
+            HMAC.set(mac);
+        }
+        return mac;
+    }
+
+    /**
+     * 在当前线程创建解锁要用的 JCA 对象，加载 provider。之后在同一线程上解锁时只剩 PBKDF2 本身。
+     */
+    static void prewarm() throws GeneralSecurityException {
+        pbkdf2();
+        gcm();
+        hmac();
+        RANDOM.nextInt();
+    }
+
+    /**
+     * 当前线程复用的 GCM IV 数组，内容由调用方填充。
+     */
+    static byte[] ivBuffer() {
+        byte[] iv = IV.get();
+        if (iv == null) {
+            iv = new byte[12];
+            IV.set(iv);
+        }
+        return iv;
+    }
+
+    /**
+     * 当前线程复用的密文读取 buffer，已 clear，容量不小于 minCapacity。
+     */
+    static ByteBuffer sealedBuffer(int minCapacity) {
+        return reuse(SEALED, minCapacity);
+    }
+
+    /**
+     * 当前线程复用的明文 buffer，已 clear，容量不小于 minCapacity。
+     * 调用方用完后必须在 finally 中 wipe()，明文不能留到下一条记录。
+     */
+    static ByteBuffer plainBuffer(int minCapacity) {
+        return reuse(PLAIN, minCapacity);
+    }
+
+    /**
+     * 清零堆内存 buffer 中 [0, limit) 的内容。解码成功后 limit 是明文长度；解码中途失败时 limit 是容量，整块清零。
+     */
+    static void wipe(ByteBuffer buffer) {
+        Arrays.fill(buffer.array(), buffer.arrayOffset(), buffer.arrayOffset() + buffer.limit(), (byte) 0);
+    }
+
+    /**
+     * 会话锁定时调用。ThreadLocal 无法从其他线程清空，改为让每个线程下次取 buffer 时先整块清零。
+     */
+    static void discardBuffers() {
+        bufferEpoch++;
+    }
+
+    private static ByteBuffer reuse(ThreadLocal<BufferSlot> local, int minCapacity) {
+        BufferSlot slot = local.get();
+        if (slot == null) {
+            slot = new BufferSlot();
+            local.set(slot);
+        }
+        int epoch = bufferEpoch;
+        ByteBuffer buffer = slot.buffer;
+        if (buffer != null && slot.epoch != epoch) {
+            Arrays.fill(buffer.array(), (byte) 0);
+        }
+        slot.epoch = epoch;
+        if (buffer == null || buffer.capacity() < minCapacity) {
+            int capacity = buffer != null ? Math.max(minCapacity, buffer.capacity() * 2) : minCapacity;
+            if (buffer != null) {
+                Arrays.fill(buffer.array(), (byte) 0);
+            }
+            buffer = ByteBuffer.allocate(capacity);
+            slot.buffer = buffer;
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    static SecureRandom random() {
+        return RANDOM;
+    }
+
+    static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        RANDOM.nextBytes(bytes);
+        return bytes;
+    }
+}
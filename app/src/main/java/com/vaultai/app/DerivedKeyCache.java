@@ -0,0 +1,117 @@
+package com.vaultai.app;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * PBKDF2 派生密钥的 LRU 缓存，作用域为一次解锁。
+ *
+ * 缓存 key 只有盐：密钥都由 PasswordManager 在解锁时保存的主密码派生，unlock 和改密成功时调用 open()
+ * 开始新的作用域，锁定时调用 clear()。作用域之外的 put 被忽略，锁定后仍在运行的后台任务不会重新填充缓存。
+ *
+ * v2 记录每条各有一个盐，第一次解密任何一条都会未命中。命中只发生在同一会话内再次解密同一条记录
+ * （列表加载后显示或复制、随后的迁移或导出），或同一个导出文件的多次读取。容量按能覆盖常见的
+ * 未迁移 v2 密码库设置；条目更多时第二遍读取的前面部分已被淘汰，仍会重新派生。
+ */
+class DerivedKeyCache {
+    static final int DEFAULT_CAPACITY = 4096;
+
+    private final int capacity;
+    private final LinkedHashMap<Salt, SecretKeySpec> keys;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    // 是否处于一次解锁的作用域内；只在持有 keys 的锁时访问
+    private boolean open;
+
+    private static final class Salt {
+        final byte[] bytes;
+        final int hash;
+
+        Salt(byte[] bytes) {
+            this.bytes = bytes.clone();
+            this.hash = Arrays.hashCode(bytes);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Salt && Arrays.equals(bytes, ((Salt) o).bytes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    DerivedKeyCache(int capacity) {
+        this.capacity = capacity;
+        this.keys = new LinkedHashMap<Salt, SecretKeySpec>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Salt, SecretKeySpec> eldest) {
+                return size() > DerivedKeyCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * 开始一个新的作用域：清空旧的密钥。
+     */
+    void open() {
+        synchronized (keys) {
+            keys.clear();
+            open = true;
+        }
+    }
+
+    /**
+     * 命中时返回缓存的密钥，否则返回 null（计一次未命中）。
+     */
+    SecretKeySpec get(byte[] salt) {
+        SecretKeySpec key;
+        synchronized (keys) {
+            key = keys.get(new Salt(salt));
+        }
+        if (key != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+        return key;
+    }
+
+    void put(byte[] salt, SecretKeySpec key) {
+        synchronized (keys) {
+            if (open) {
+                keys.put(new Salt(salt), key);
+            }
+        }
+    }
+
+    /**
+     * 结束作用域，清空所有密钥。
+     */
+    void clear() {
+        synchronized (keys) {
+            keys.clear();
+            open = false;
+        }
+    }
+
+    int size() {
+        synchronized (keys) {
+            return keys.size();
+        }
+    }
+
+    long hitCount() {
+        return hits.get();
+    }
+
+    long missCount() {
+        return misses.get();
+    }
+}
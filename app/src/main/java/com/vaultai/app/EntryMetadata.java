@@ -0,0 +1,51 @@
+package com.vaultai.app;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * 条目的非机密部分（网站名和用户名）。列表只解密这一部分，密码和备注在复制、显示或编辑时才解密。
+ */
+public final class EntryMetadata {
+    private final String siteName;
+    private final String username;
+
+    public EntryMetadata(String siteName, String username) {
+        this.siteName = (siteName != null) ? siteName : "";
+        this.username = (username != null) ? username : "";
+    }
+
+    public String getSiteName() {
+        return siteName;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    /**
+     * 解码 PasswordEntry.metadataBytes() 的输出，格式不正确时抛出 IllegalArgumentException。
+     */
+    static EntryMetadata fromBuffer(ByteBuffer in) {
+        try {
+            String site = PasswordEntry.readField(in);
+            String user = PasswordEntry.readField(in);
+            return new EntryMetadata(site, user);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Truncated metadata record", e);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof EntryMetadata)) return false;
+        EntryMetadata other = (EntryMetadata) o;
+        return siteName.equals(other.siteName) && username.equals(other.username);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * siteName.hashCode() + username.hashCode();
+    }
+}
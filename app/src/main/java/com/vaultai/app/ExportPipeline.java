@@ -0,0 +1,285 @@
+package com.vaultai.app;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 流水线式导出：枚举 key → 多个解密线程 → 单个按序写入的线程，各阶段之间用有界队列连接。
+ *
+ * 三个阶段同时运行。枚举线程每发出一个 key 先获取一个许可，写入线程写完（或跳过）后归还，
+ * 因此在途条目（队列中的加上等待重排的）不超过 WINDOW 个，解密再快也不会堆积内存。
+ * 写入线程按枚举顺序输出，导出文件与密码库的 key 顺序一致。
+ */
+public class ExportPipeline {
+    static final int WINDOW = 512;
+    static final int QUEUE_CAPACITY = 128;
+
+    private static final Item END = new Item(-1, null);
+
+    private static final class Item {
+        final long seq;
+        final String key;
+        PasswordEntry entry;
+
+        Item(long seq, String key) {
+            this.seq = seq;
+            this.key = key;
+        }
+    }
+
+    /**
+     * 各阶段的计数、耗时和队列深度。运行期间可随时读取。
+     */
+    public static final class Metrics {
+        final AtomicLong enumerated = new AtomicLong();
+        final AtomicLong decrypted = new AtomicLong();
+        final AtomicLong failed = new AtomicLong();
+        final AtomicLong written = new AtomicLong();
+        final AtomicLong decryptNanos = new AtomicLong();
+        final AtomicLong writeNanos = new AtomicLong();
+        final AtomicInteger maxKeyQueueDepth = new AtomicInteger();
+        final AtomicInteger maxResultQueueDepth = new AtomicInteger();
+        volatile int keyQueueDepth;
+        volatile int resultQueueDepth;
+        volatile long startNanos;
+        volatile long endNanos;
+
+        public long getEnumerated() {
+            return enumerated.get();
+        }
+
+        public long getDecrypted() {
+            return decrypted.get();
+        }
+
+        public long getFailed() {
+            return failed.get();
+        }
+
+        public long getWritten() {
+            return written.get();
+        }
+
+        public int getKeyQueueDepth() {
+            return keyQueueDepth;
+        }
+
+        public int getResultQueueDepth() {
+            return resultQueueDepth;
+        }
+
+        public int getMaxKeyQueueDepth() {
+            return maxKeyQueueDepth.get();
+        }
+
+        public int getMaxResultQueueDepth() {
+            return maxResultQueueDepth.get();
+        }
+
+        public long getElapsedMillis() {
+            long end = endNanos != 0 ? endNanos : System.nanoTime();
+            return startNanos != 0 ? (end - startNanos) / 1000000L : 0;
+        }
+
+        /**
+         * 解密阶段吞吐量（条/秒），按所有解密线程的累计忙碌时间折算到单线程。
+         */
+        public double getDecryptPerSecondPerWorker() {
+            long nanos = decryptNanos.get();
+            return nanos > 0 ? decrypted.get() * 1e9 / nanos : 0;
+        }
+
+        public double getWritePerSecond() {
+            long nanos = writeNanos.get();
+            return nanos > 0 ? written.get() * 1e9 / nanos : 0;
+        }
+
+        public double getOverallPerSecond() {
+            long millis = getElapsedMillis();
+            return millis > 0 ? written.get() * 1000.0 / millis : 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(java.util.Locale.US,
+                    "enumerated=%d decrypted=%d failed=%d written=%d elapsed=%dms overall=%.0f/s "
+                            + "decrypt=%.0f/s/worker write=%.0f/s maxKeyQueue=%d maxResultQueue=%d",
+                    getEnumerated(), getDecrypted(), getFailed(), getWritten(), getElapsedMillis(),
+                    getOverallPerSecond(), getDecryptPerSecondPerWorker(), getWritePerSecond(),
+                    getMaxKeyQueueDepth(), getMaxResultQueueDepth());
+        }
+    }
+
+    private final PasswordManager passwordManager;
+    private final int workers;
+    private final Metrics metrics = new Metrics();
+    // 枚举或解密线程的第一个意外失败，写入线程收到 END 时检查并抛出
+    private volatile Throwable failure;
+
+    public ExportPipeline(PasswordManager passwordManager) {
+        this(passwordManager, Math.max(1, Runtime.getRuntime().availableProcessors()));
+    }
+
+    ExportPipeline(PasswordManager passwordManager, int workers) {
+        this.passwordManager = passwordManager;
+        this.workers = workers;
+    }
+
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * 把全部条目写入 writer，在调用线程上执行写入阶段。不关闭 writer。
+     * 写入出错时停止其他阶段并抛出异常；单个条目解密失败只计入 failed。
+     * 枚举失败（如导出途中锁定）或解密线程意外退出时，同样停止并抛出该异常。
+     */
+    public Metrics run(VaultExport.Writer writer) throws Exception {
+        final BlockingQueue<Item> keyQueue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        final BlockingQueue<Item> resultQueue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        final Semaphore window = new Semaphore(WINDOW);
+        ExecutorService pool = Executors.newFixedThreadPool(workers + 1);
+        metrics.startNanos = System.nanoTime();
+        try {
+            pool.execute(new Runnable() {
+                @Override
+                public void run() {
+                    enumerate(keyQueue, window);
+                }
+            });
+            for (int i = 0; i < workers; i++) {
+                pool.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        decrypt(keyQueue, resultQueue);
+                    }
+                });
+            }
+            write(writer, resultQueue, window);
+        } finally {
+            pool.shutdownNow();
+            metrics.endNanos = System.nanoTime();
+        }
+        return metrics;
+    }
+
+    private void enumerate(BlockingQueue<Item> keyQueue, Semaphore window) {
+        try {
+            long seq = 0;
+            for (String key : passwordManager.getAllKeys()) {
+                window.acquire();
+                keyQueue.put(new Item(seq++, key));
+                metrics.enumerated.incrementAndGet();
+                sampleDepth(keyQueue, true);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Throwable t) {
+            fail(t);
+        } finally {
+            // 无论如何都通知每个解密线程结束，否则写入线程会一直等待
+            try {
+                for (int i = 0; i < workers; i++) {
+                    keyQueue.put(END);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void decrypt(BlockingQueue<Item> keyQueue, BlockingQueue<Item> resultQueue) {
+        try {
+            while (true) {
+                Item item = keyQueue.take();
+                if (item == END) {
+                    return;
+                }
+                long start = System.nanoTime();
+                try {
+                    item.entry = passwordManager.readEntry(item.key);
+                    metrics.decrypted.incrementAndGet();
+                } catch (Exception e) {
+                    metrics.failed.incrementAndGet();
+                }
+                long elapsed = System.nanoTime() - start;
+                metrics.decryptNanos.addAndGet(elapsed);
+                VaultMetrics.EXPORT_DECRYPT.record(elapsed);
+                resultQueue.put(item);
+                sampleDepth(resultQueue, false);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Throwable t) {
+            fail(t);
+        } finally {
+            try {
+                resultQueue.put(END);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void fail(Throwable t) {
+        synchronized (this) {
+            if (failure == null) {
+                failure = t;
+            }
+        }
+    }
+
+    private void write(VaultExport.Writer writer, BlockingQueue<Item> resultQueue, Semaphore window)
+            throws Exception {
+        Map<Long, Item> pending = new HashMap<>();
+        long nextSeq = 0;
+        int finishedWorkers = 0;
+        while (finishedWorkers < workers) {
+            Item item = resultQueue.take();
+            if (item == END) {
+                // 失败的线程先记录再发出 END，这里一定能看到；丢失的条目会让重排永远等下去，不能继续
+                Throwable t = failure;
+                if (t instanceof Exception) throw (Exception) t;
+                if (t instanceof Error) throw (Error) t;
+                if (t != null) throw new IllegalStateException(t);
+                finishedWorkers++;
+                continue;
+            }
+            pending.put(item.seq, item);
+            Item next;
+            while ((next = pending.remove(nextSeq)) != null) {
+                if (next.entry != null) {
+                    long start = System.nanoTime();
+                    writer.write(next.entry);
+                    long elapsed = System.nanoTime() - start;
+                    metrics.writeNanos.addAndGet(elapsed);
+                    VaultMetrics.EXPORT_WRITE.record(elapsed);
+                    metrics.written.incrementAndGet();
+                }
+                nextSeq++;
+                window.release();
+            }
+        }
+    }
+
+    private void sampleDepth(BlockingQueue<Item> queue, boolean keyQueue) {
+        int depth = queue.size();
+        AtomicInteger max = keyQueue ? metrics.maxKeyQueueDepth : metrics.maxResultQueueDepth;
+        if (keyQueue) {
+            metrics.keyQueueDepth = depth;
+        } else {
+            metrics.resultQueueDepth = depth;
+        }
+        int current;
+        while (depth > (current = max.get()) && !max.compareAndSet(current, depth)) {
+            // 重试直到记录到更大的值
+        }
+    }
+}
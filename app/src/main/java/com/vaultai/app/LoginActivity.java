@@ -16,13 +16,19 @@ import androidx.appcompat.app.AppCompatActivity;
 public class LoginActivity extends AppCompatActivity {
     private static final String TAG = "LoginActivity";
     private static final String PREFS_NAME = "VaultAIAuth";
+    // 旧版本保存的 String.hashCode()，仅用于还没有 key_check_b64 的安装，解锁成功后删除
     private static final String KEY_MASTER_PASSWORD_HASH = "master_password_hash";
-    // 不再保存主密码明文，仅保存哈希
+    // 不再保存主密码明文，主密码由 PasswordManager 的校验值验证
     
     private EditText masterPasswordEditText;
     private Button verifyButton;
     private TextView errorTextView;
     private SharedPreferences authPrefs;
+    private VaultSession session;
+    // 会话的 PasswordManager，预热完成前为 null，只在 unlockExecutor 上读取
+    private volatile PasswordManager passwordManager;
+    // 预热、解锁和改密都在同一线程上执行，复用该线程缓存的 PBKDF2/GCM/HMAC 实例
+    private final java.util.concurrent.ExecutorService unlockExecutor = java.util.concurrent.Executors.newSingleThreadExecutor();
     private Button changeMasterOnLoginButton;
     private Button resetAllDataButton;
     
@@ -47,6 +53,7 @@ public class LoginActivity extends AppCompatActivity {
 
             authPrefs = getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
             Log.d(TAG, "SharedPreferences initialized");
+            session = VaultAIApp.session(this);
             
             // 始终显示登录界面，不自动跳过
             
@@ -55,12 +62,7 @@ public class LoginActivity extends AppCompatActivity {
             
             initializeViews();
             setupListeners();
-            String storedHashInit = authPrefs.getString(KEY_MASTER_PASSWORD_HASH, null);
-            if (storedHashInit == null) {
-                verifyButton.setText("设置主密码并进入");
-            } else {
-                verifyButton.setText("验证并进入");
-            }
+            prewarmAsync();
             Log.d(TAG, "LoginActivity initialization completed");
             
         } catch (Exception e) {
@@ -69,6 +71,27 @@ public class LoginActivity extends AppCompatActivity {
         }
     }
 
+    /**
+     * 在用户输入主密码期间于后台打开密码库文件（加载索引）、读取盐和包裹的数据密钥、初始化加密 provider，
+     * 点击验证后只剩 PBKDF2 派生本身。
+     */
+    private void prewarmAsync() {
+        unlockExecutor.execute(() -> {
+            long start = System.nanoTime();
+            try {
+                PasswordManager pm = session.getPasswordManager();
+                pm.prewarm();
+                passwordManager = pm;
+                final boolean set = isMasterPasswordSet();
+                Log.d(TAG, "预热完成: " + (System.nanoTime() - start) / 1000000L + " ms");
+                runOnUiThread(() -> verifyButton.setText(set ? "验证并进入" : "设置主密码并进入"));
+            } catch (Exception e) {
+                Log.e(TAG, "预热失败", e);
+                runOnUiThread(() -> showFatalErrorDialog("登录界面初始化失败: " + e.getMessage()));
+            }
+        });
+    }
+
     private void showFatalErrorDialog(String message) {
         try {
             new androidx.appcompat.app.AlertDialog.Builder(this)
@@ -129,27 +152,7 @@ public class LoginActivity extends AppCompatActivity {
                     return;
                 }
 
-                String storedHash = authPrefs.getString(KEY_MASTER_PASSWORD_HASH, null);
-                if (storedHash == null) {
-                    android.widget.Toast.makeText(this, "尚未设置主密码", android.widget.Toast.LENGTH_SHORT).show();
-                    return;
-                }
-                if (!hashPassword(current).equals(storedHash)) {
-                    android.widget.Toast.makeText(this, "当前主密码错误", android.widget.Toast.LENGTH_SHORT).show();
-                    return;
-                }
-
-                PasswordManager pm = new PasswordManager(this);
-                boolean ok = pm.reEncryptAll(current, newPwd);
-                if (!ok) {
-                    android.widget.Toast.makeText(this, "重新加密数据失败", android.widget.Toast.LENGTH_SHORT).show();
-                    return;
-                }
-
-                authPrefs.edit()
-                        .putString(KEY_MASTER_PASSWORD_HASH, hashPassword(newPwd))
-                        .apply();
-                android.widget.Toast.makeText(this, "主密码已更新", android.widget.Toast.LENGTH_SHORT).show();
+                changeMasterPasswordAsync(current, newPwd);
             });
 
             builder.setNegativeButton("取消", null);
@@ -162,13 +165,67 @@ public class LoginActivity extends AppCompatActivity {
         }
     }
 
+    /**
+     * 在后台线程修改主密码，需要迁移旧格式条目时在对话框中显示进度和吞吐量。
+     */
+    private void changeMasterPasswordAsync(String current, String newPwd) {
+        final androidx.appcompat.app.AlertDialog progress = new androidx.appcompat.app.AlertDialog.Builder(this)
+                .setMessage("正在更新主密码...")
+                .setCancelable(false)
+                .create();
+        progress.show();
+        unlockExecutor.execute(() -> {
+            String error = null;
+            if (passwordManager == null) {
+                error = "初始化失败，请重试";
+            } else if (!isMasterPasswordSet()) {
+                error = "尚未设置主密码";
+            } else if (!matchesLegacyHash(current)) {
+                error = "当前主密码错误";
+            }
+            if (error != null) {
+                final String message = error;
+                runOnUiThread(() -> {
+                    try { if (progress.isShowing()) progress.dismiss(); } catch (Exception ignored) {}
+                    android.widget.Toast.makeText(this, message, android.widget.Toast.LENGTH_SHORT).show();
+                });
+                return;
+            }
+            boolean ok = false;
+            try {
+                ok = session.changeMasterPassword(current, newPwd, (done, total, rate) -> runOnUiThread(() ->
+                        progress.setMessage(MainActivity.formatMigrationProgress(done, total, rate))));
+            } catch (Exception e) {
+                Log.e(TAG, "修改主密码失败", e);
+            } finally {
+                // 改密会解锁密码库，但此时用户并未登录
+                session.lock();
+            }
+            final boolean success = ok;
+            runOnUiThread(() -> {
+                try { if (progress.isShowing()) progress.dismiss(); } catch (Exception ignored) {}
+                if (!success) {
+                    android.widget.Toast.makeText(this, "当前主密码错误或重新加密数据失败", android.widget.Toast.LENGTH_SHORT).show();
+                    return;
+                }
+                authPrefs.edit().remove(KEY_MASTER_PASSWORD_HASH).apply();
+                android.widget.Toast.makeText(this, "主密码已更新", android.widget.Toast.LENGTH_SHORT).show();
+            });
+        });
+    }
+
     private void confirmResetAllData() {
         try {
             new androidx.appcompat.app.AlertDialog.Builder(this)
                     .setTitle("重置数据")
                     .setMessage("忘记主密码后，所有已保存的密码无法找回。继续将清除所有密码和登录信息并重置主密码。是否继续？")
                     .setPositiveButton("清除", (dialog, which) -> {
-                        getSharedPreferences("VaultAIPasswords", MODE_PRIVATE).edit().clear().apply();
+                        try {
+                            session.getPasswordManager().clearAll();
+                            session.lock();
+                        } catch (Exception e) {
+                            Log.e(TAG, "清除密码库失败", e);
+                        }
                         getSharedPreferences("VaultAIAuth", MODE_PRIVATE).edit().clear().apply();
                         android.widget.Toast.makeText(this, "已清除所有数据", android.widget.Toast.LENGTH_SHORT).show();
                     })
@@ -179,6 +236,10 @@ public class LoginActivity extends AppCompatActivity {
         }
     }
     
+    /**
+     * 在预热过的后台线程上派生一次密钥并与校验值比较，成功后密钥留在进程内供 MainActivity 直接使用。
+     * 首次使用时同时生成盐、校验值和数据密钥。从点击到主界面首行显示的耗时由 MainActivity 记录。
+     */
     private void verifyMasterPassword() {
         String enteredPassword = masterPasswordEditText.getText().toString().trim();
         
@@ -186,43 +247,65 @@ public class LoginActivity extends AppCompatActivity {
             showError("请输入主密码");
             return;
         }
-        
-        try {
-            String storedHash = authPrefs.getString(KEY_MASTER_PASSWORD_HASH, null);
-            
-            if (storedHash == null) {
-                // 首次使用，设置主密码
-                setMasterPassword(enteredPassword);
-            } else {
-                // 验证主密码
-                if (verifyPasswordHash(enteredPassword, storedHash)) {
-                    setUserLoggedIn(true);
-                    navigateToMainActivity(enteredPassword);
-                } else {
-                    showError("主密码错误");
+
+        final long startNanos = System.nanoTime();
+        verifyButton.setEnabled(false);
+        errorTextView.setVisibility(View.GONE);
+        unlockExecutor.execute(() -> {
+            if (passwordManager == null || !matchesLegacyHash(enteredPassword)) {
+                final String message = passwordManager == null ? "初始化失败，请重试" : "主密码错误";
+                if (passwordManager != null) {
+                    VaultMetrics.LOGIN_FAILURES.inc();
                 }
+                runOnUiThread(() -> {
+                    verifyButton.setEnabled(true);
+                    showError(message);
+                });
+                return;
             }
-        } catch (Exception e) {
-            Log.e(TAG, "验证主密码时出错", e);
-            showError("验证失败，请重试");
-        }
+            final boolean firstUse = !isMasterPasswordSet();
+            long deriveStart = System.nanoTime();
+            boolean ok = session.unlock(enteredPassword);
+            long unlockNanos = System.nanoTime() - deriveStart;
+            Log.d(TAG, "解锁耗时: " + unlockNanos / 1000000L + " ms");
+            VaultMetrics.LOGIN_VERIFY.record(unlockNanos);
+            VaultTrace.log(VaultTrace.UNLOCK, unlockNanos / 1000000L, 0, ok ? 1 : 0);
+            if (!ok && !firstUse) {
+                VaultMetrics.LOGIN_FAILURES.inc();
+            }
+            runOnUiThread(() -> {
+                verifyButton.setEnabled(true);
+                if (!ok) {
+                    showError(firstUse ? "设置主密码失败" : "主密码错误");
+                    return;
+                }
+                // 校验值已写入，旧哈希不再需要
+                authPrefs.edit().remove(KEY_MASTER_PASSWORD_HASH).apply();
+                setUserLoggedIn(true);
+                if (firstUse) {
+                    Toast.makeText(this, "主密码设置成功！", Toast.LENGTH_SHORT).show();
+                }
+                navigateToMainActivity(enteredPassword, startNanos);
+            });
+        });
     }
-    
-    private void setMasterPassword(String password) {
-        try {
-            String hash = hashPassword(password);
-            authPrefs.edit().putString(KEY_MASTER_PASSWORD_HASH, hash).apply();
-            setUserLoggedIn(true);
-            Toast.makeText(this, "主密码设置成功！", Toast.LENGTH_SHORT).show();
-            navigateToMainActivity(password);
-        } catch (Exception e) {
-            Log.e(TAG, "设置主密码时出错", e);
-            showError("设置主密码失败");
+
+    private boolean isMasterPasswordSet() {
+        return passwordManager.hasKeyCheck() || authPrefs.getString(KEY_MASTER_PASSWORD_HASH, null) != null;
+    }
+
+    /**
+     * 还没有校验值的旧安装先用旧哈希过滤，避免只有 v3 条目、尚无数据密钥时任意密码都能解锁。
+     * 已有校验值时总是返回 true，由 unlock 做真正的验证。
+     */
+    private boolean matchesLegacyHash(String password) {
+        String storedHash = authPrefs.getString(KEY_MASTER_PASSWORD_HASH, null);
+        if (storedHash == null || passwordManager.hasKeyCheck()) {
+            return true;
         }
+        return verifyPasswordHash(password, storedHash);
     }
     
-    // 已移除保存主密码明文的逻辑
-    
     private boolean verifyPasswordHash(String password, String storedHash) {
         try {
             String hash = hashPassword(password);
@@ -250,20 +333,26 @@ public class LoginActivity extends AppCompatActivity {
         errorTextView.setVisibility(View.VISIBLE);
     }
     
-    private void navigateToMainActivity(String masterPassword) {
+    private void navigateToMainActivity(String masterPassword, long loginStartedNanos) {
         Log.d(TAG, "navigateToMainActivity called with password: " + (TextUtils.isEmpty(masterPassword) ? "empty" : "present"));
         if (TextUtils.isEmpty(masterPassword)) {
             Log.w(TAG, "Master password empty, not navigating and resetting login state");
             setUserLoggedIn(false);
             return;
         }
+        // 会话已解锁，主密码不放入 Intent
         Intent intent = new Intent(this, MainActivity.class);
-        intent.putExtra("master_password", masterPassword);
-        Log.d(TAG, "Intent created with extra: master_password");
+        intent.putExtra(MainActivity.EXTRA_LOGIN_STARTED_NANOS, loginStartedNanos);
         startActivity(intent);
         finish();
     }
     
+    @Override
+    protected void onDestroy() {
+        unlockExecutor.shutdown();
+        super.onDestroy();
+    }
+
     @Override
     public void onBackPressed() {
         // 禁用返回键，防止绕过登录
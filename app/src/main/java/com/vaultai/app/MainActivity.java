@@ -26,19 +26,27 @@ import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.cardview.widget.CardView;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 
 import java.util.ArrayList;
 import java.util.List;
 
-public class MainActivity extends AppCompatActivity {
+public class MainActivity extends AppCompatActivity implements PasswordListAdapter.Listener {
     private static final String TAG = "MainActivity";
+    // LoginActivity 点击验证时的 System.nanoTime()，用于统计登录到首屏的耗时
+    static final String EXTRA_LOGIN_STARTED_NANOS = "login_started_nanos";
     private static final int PERMISSION_REQUEST_CODE = 100;
     private static final int REQ_EXPORT = 1001;
     private static final int REQ_IMPORT = 1002;
+    private static final int REQ_SAVE_REPORT = 1003;
+    // 性能报告对话框中显示的事件条数，保存到文件时附带全部事件
+    private static final int REPORT_TRACE_EVENTS = 100;
     
-    private LinearLayout passwordListContainer;
+    private RecyclerView passwordRecyclerView;
+    private PasswordListAdapter passwordListAdapter;
     private LinearLayout emptyStateLayout;
     private Button addPasswordButton;
     private Button bulkDeleteButton;
@@ -47,12 +55,30 @@ public class MainActivity extends AppCompatActivity {
     private android.widget.ImageButton overflowMenuButton;
     private EditText searchEditText;
     private PasswordManager passwordManager;
-    private String masterPassword;
+    private VaultSession session;
+    // 会话因超时或在其他界面被锁定时回到登录页
+    private final VaultSession.Listener sessionListener = () -> runOnUiThread(this::returnToLogin);
     private ClipboardManager clipboardManager;
-    private List<String> allPasswords = new ArrayList<>();
-    private boolean multiSelectMode = false;
-    private java.util.Set<String> selectedKeys = new java.util.HashSet<>();
-    private java.util.concurrent.ExecutorService executor = java.util.concurrent.Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors()));
+    // 复合 key -> 列表行
+    // 行、搜索索引、多选和滚动状态由会话持有，Activity 重建时直接复用
+    private VaultListState listState;
+    private List<String> displayedKeys = new ArrayList<>();
+    private List<PasswordListAdapter.Row> displayedRows = new ArrayList<>();
+    private final java.util.concurrent.ExecutorService searchExecutor = java.util.concurrent.Executors.newSingleThreadExecutor();
+    private final java.util.concurrent.atomic.AtomicInteger searchGeneration = new java.util.concurrent.atomic.AtomicInteger();
+    private static final int FIRST_LOAD_CHUNK = 32;
+    private static final int LOAD_CHUNK = 256;
+    private long loadStartNanos;
+    private boolean firstRowPending;
+    // 从开始加载到第一行显示的耗时，尚未显示时为 -1
+    private long timeToFirstRowMillis = -1;
+    // 等待用户选择保存位置的性能报告
+    private String pendingReport;
+    private long loginStartedNanos;
+    // 重建后第一次提交列表时恢复滚动位置
+    private boolean scrollRestorePending;
+    private long rebindStartNanos;
+    private final java.util.concurrent.ExecutorService executor = java.util.concurrent.Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors()));
     private AlertDialog progressDialog;
     private Button selectAllButton;
     
@@ -74,29 +100,20 @@ public class MainActivity extends AppCompatActivity {
             setContentView(R.layout.activity_main);
             Log.d(TAG, "setContentView completed");
             
-            // 获取主密码
+            // 解锁后的密钥在进程级会话中，主密码不经 Intent 传递，也不保存在界面里
+            session = VaultAIApp.session(this);
             Intent intent = getIntent();
             if (intent != null) {
-                masterPassword = intent.getStringExtra("master_password");
-                Log.d(TAG, "Intent received: " + (intent.getExtras() != null ? "has extras" : "no extras"));
-                Log.d(TAG, "Master password retrieved: " + (TextUtils.isEmpty(masterPassword) ? "empty" : "present"));
-                if (!TextUtils.isEmpty(masterPassword)) {
-                    Log.d(TAG, "Master password length: " + masterPassword.length());
-                }
-            } else {
-                Log.e(TAG, "Intent is null!");
-                masterPassword = "";
+                loginStartedNanos = intent.getLongExtra(EXTRA_LOGIN_STARTED_NANOS, 0L);
             }
             
-            if (TextUtils.isEmpty(masterPassword)) {
-                Log.e(TAG, "Master password is empty, returning to login");
-                SharedPreferences prefs = getSharedPreferences("VaultAIAuth", MODE_PRIVATE);
-                prefs.edit().putBoolean("is_logged_in", false).apply();
-                Intent loginIntent = new Intent(this, LoginActivity.class);
-                startActivity(loginIntent);
-                finish();
+            if (!session.isUnlocked()) {
+                Log.e(TAG, "Session is locked, returning to login");
+                returnToLogin();
                 return;
             }
+            session.addListener(sessionListener);
+            listState = session.getListState();
             
             // 继续初始化
             continueInitialization();
@@ -134,9 +151,9 @@ public class MainActivity extends AppCompatActivity {
             setupListeners();
             Log.d(TAG, "Step 2: Listeners setup successfully");
             
-            Log.d(TAG, "Step 3: Creating PasswordManager...");
-            passwordManager = new PasswordManager(this);
-            Log.d(TAG, "Step 3: PasswordManager created successfully");
+            Log.d(TAG, "Step 3: Getting PasswordManager from session...");
+            passwordManager = session.getPasswordManager();
+            Log.d(TAG, "Step 3: PasswordManager ready");
             
             Log.d(TAG, "Step 4: Getting ClipboardManager...");
             clipboardManager = (ClipboardManager) getSystemService(Context.CLIPBOARD_SERVICE);
@@ -146,9 +163,14 @@ public class MainActivity extends AppCompatActivity {
                 Log.d(TAG, "Step 4: ClipboardManager obtained successfully");
             }
             
-            Log.d(TAG, "Step 5: Loading password list...");
-            loadPasswordList();
-            Log.d(TAG, "Step 5: Password list loaded successfully");
+            if (listState.loaded) {
+                Log.d(TAG, "Step 5: Rebinding retained password list...");
+                rebindListState();
+            } else {
+                Log.d(TAG, "Step 5: Loading password list...");
+                loadPasswordList();
+            }
+            Log.d(TAG, "Step 5: Password list ready");
             
             Log.d(TAG, "All initialization steps completed successfully");
             
@@ -162,8 +184,13 @@ public class MainActivity extends AppCompatActivity {
         try {
             Log.d(TAG, "Initializing views...");
             
-            passwordListContainer = findViewById(R.id.passwordListContainer);
-            Log.d(TAG, "passwordListContainer: " + (passwordListContainer != null ? "found" : "null"));
+            passwordRecyclerView = findViewById(R.id.passwordRecyclerView);
+            Log.d(TAG, "passwordRecyclerView: " + (passwordRecyclerView != null ? "found" : "null"));
+            if (passwordRecyclerView != null) {
+                passwordRecyclerView.setLayoutManager(new LinearLayoutManager(this));
+                passwordListAdapter = new PasswordListAdapter(this);
+                passwordRecyclerView.setAdapter(passwordListAdapter);
+            }
             
             emptyStateLayout = findViewById(R.id.emptyStateLayout);
             Log.d(TAG, "emptyStateLayout: " + (emptyStateLayout != null ? "found" : "null"));
@@ -178,9 +205,9 @@ public class MainActivity extends AppCompatActivity {
             searchEditText = findViewById(R.id.searchEditText);
             Log.d(TAG, "searchEditText: " + (searchEditText != null ? "found" : "null"));
             
-            if (passwordListContainer == null || emptyStateLayout == null || addPasswordButton == null || overflowMenuButton == null) {
+            if (passwordRecyclerView == null || emptyStateLayout == null || addPasswordButton == null || overflowMenuButton == null) {
                 String errorMsg = "关键视图未找到: " +
-                    "passwordListContainer=" + (passwordListContainer != null ? "OK" : "MISSING") + ", " +
+                    "passwordRecyclerView=" + (passwordRecyclerView != null ? "OK" : "MISSING") + ", " +
                     "emptyStateLayout=" + (emptyStateLayout != null ? "OK" : "MISSING") + ", " +
                     "addPasswordButton=" + (addPasswordButton != null ? "OK" : "MISSING") + ", " +
                     "overflowMenuButton=" + (overflowMenuButton != null ? "OK" : "MISSING");
@@ -199,7 +226,7 @@ public class MainActivity extends AppCompatActivity {
     private void setupListeners() {
         if (addPasswordButton != null) {
             addPasswordButton.setOnClickListener(v -> {
-                if (multiSelectMode) {
+                if (listState.multiSelectMode) {
                     cancelMultiSelectMode();
                 } else {
                     showAddPasswordDialog();
@@ -245,19 +272,68 @@ public class MainActivity extends AppCompatActivity {
         }
     }
     
+    /**
+     * 分块解密密码库并逐块发布到列表：首块很小，尽快显示第一屏，之后每块 LOAD_CHUNK 条。
+     * 已发布的部分可以立即搜索；再次调用（如导入后）会取消上一次尚未完成的加载。
+     */
     private void loadPasswordList() {
         try {
             if (passwordManager == null) {
                 return;
             }
+            final VaultListState state = listState;
+            final int generation = state.loadGeneration.incrementAndGet();
+            state.loaded = false;
+            state.removedWhileLoading.clear();
+            loadStartNanos = System.nanoTime();
+            firstRowPending = true;
+            final long startNanos = loadStartNanos;
             executor.execute(() -> {
                 try {
-                    List<String> list = passwordManager.getAllPasswords(masterPassword);
+                    List<String> keys = passwordManager.getAllKeys();
+                    VaultMetrics.VAULT_ENTRIES.set(keys.size());
+                    int failed = 0;
+                    int from = 0;
+                    int chunkSize = FIRST_LOAD_CHUNK;
+                    boolean first = true;
+                    do {
+                        if (generation != state.loadGeneration.get()) return;
+                        int to = Math.min(keys.size(), from + chunkSize);
+                        final List<PasswordListAdapter.Row> rows = new ArrayList<>(to - from);
+                        for (int i = from; i < to; i++) {
+                            try {
+                                // 列表只解密网站名和用户名，密码和备注在用到时才解密
+                                EntryMetadata metadata = passwordManager.readMetadata(keys.get(i));
+                                if (metadata == null) continue;
+                                // 加载期间已被删除的条目不再发布
+                                if (!passwordManager.containsKey(keys.get(i))) continue;
+                                String key = passwordManager.buildKey(metadata.getSiteName(), metadata.getUsername());
+                                rows.add(new PasswordListAdapter.Row(key, metadata));
+                            } catch (Exception e) {
+                                // 如果解密失败，可能是主密码错误
+                                Log.w(TAG, "解密条目失败", e);
+                                VaultMetrics.LIST_LOAD_ERRORS.inc();
+                                failed++;
+                            }
+                        }
+                        final boolean reset = first;
+                        runOnUiThread(() -> publishLoadedRows(generation, rows, reset));
+                        first = false;
+                        from = to;
+                        chunkSize = LOAD_CHUNK;
+                    } while (from < keys.size());
+                    long loadNanos = System.nanoTime() - startNanos;
+                    VaultMetrics.LIST_LOAD.record(loadNanos);
+                    VaultTrace.log(VaultTrace.LIST_LOAD, loadNanos / 1000000L, keys.size(), failed);
                     runOnUiThread(() -> {
-                        allPasswords = list;
-                        String query = searchEditText != null ? searchEditText.getText().toString() : "";
-                        filterPasswords(query);
+                        if (generation == state.loadGeneration.get()) {
+                            state.loaded = true;
+                            state.removedWhileLoading.clear();
+                            // 加载中按块追加的行是读取顺序，完成后按索引排序重新渲染一次
+                            filterPasswords(searchEditText != null ? searchEditText.getText().toString() : "");
+                        }
                     });
+                    resumeMigration();
                 } catch (Exception e) {
                     runOnUiThread(() -> Toast.makeText(this, "加载密码列表失败: " + e.getMessage(), Toast.LENGTH_SHORT).show());
                 }
@@ -265,203 +341,322 @@ public class MainActivity extends AppCompatActivity {
         } catch (Exception ignored) {}
     }
 
+    /**
+     * 在主线程上合并一块已解密的条目。加载期间用户新增、修改或删除过的条目以当前状态为准。
+     * 没有搜索词时只把这一块追加到显示列表末尾，不重新过滤已加载的行；有搜索词时重新查询。
+     */
+    private void publishLoadedRows(int generation, List<PasswordListAdapter.Row> rows, boolean reset) {
+        if (generation != listState.loadGeneration.get()) return;
+        if (reset) {
+            listState.rowsByKey = new java.util.HashMap<>();
+            listState.searchIndex = new SearchIndex();
+        }
+        List<PasswordListAdapter.Row> added = new ArrayList<>(rows.size());
+        SearchIndex.Editor indexEditor = listState.searchIndex.edit();
+        for (PasswordListAdapter.Row row : rows) {
+            if (listState.rowsByKey.containsKey(row.getKey()) || listState.removedWhileLoading.contains(row.getKey())) continue;
+            EntryMetadata metadata = row.getMetadata();
+            listState.rowsByKey.put(row.getKey(), row);
+            indexEditor.put(row.getKey(), metadata.getSiteName(), metadata.getUsername());
+            added.add(row);
+        }
+        indexEditor.commit();
+        String query = searchEditText != null ? searchEditText.getText().toString() : "";
+        if (!query.trim().isEmpty()) {
+            filterPasswords(query);
+            return;
+        }
+        // 放弃还在进行的查询，它们基于追加之前的索引，加载完成后会统一重新排序
+        searchGeneration.incrementAndGet();
+        List<PasswordListAdapter.Row> shown = new ArrayList<>(reset ? added.size() : displayedRows.size() + added.size());
+        List<String> shownKeys = new ArrayList<>(shown.size());
+        if (!reset) {
+            // 被取消的查询可能来不及移走刚删除或修改的行，以 rowsByKey 为准
+            for (PasswordListAdapter.Row row : displayedRows) {
+                PasswordListAdapter.Row current = listState.rowsByKey.get(row.getKey());
+                if (current == null) continue;
+                shown.add(current);
+                shownKeys.add(current.getKey());
+            }
+        }
+        for (PasswordListAdapter.Row row : added) {
+            shown.add(row);
+            shownKeys.add(row.getKey());
+        }
+        showRows(shown, shownKeys);
+    }
+
+    /**
+     * 在搜索线程上查询索引，输入新字符后旧的查询会被取消，结果回到主线程渲染。
+     */
     private void filterPasswords(String query) {
-        if (passwordListContainer != null) {
-            passwordListContainer.removeAllViews();
+        final int generation = searchGeneration.incrementAndGet();
+        final SearchIndex index = listState.searchIndex;
+        final String q = query != null ? query : "";
+        try {
+            searchExecutor.execute(() -> {
+                SearchIndex.Cancellation stale = () -> generation != searchGeneration.get();
+                long t = VaultMetrics.start();
+                List<String> keys = index.search(q, stale);
+                VaultMetrics.LIST_FILTER.stop(t);
+                if (keys == null || stale.isCancelled()) return;
+                runOnUiThread(() -> {
+                    if (generation != searchGeneration.get()) return;
+                    renderPasswords(keys, q);
+                });
+            });
+        } catch (java.util.concurrent.RejectedExecutionException ignored) {}
+    }
+
+    /**
+     * Activity 重建后用会话中保留的模型重新绑定列表，恢复多选和滚动位置，不解密任何条目。
+     */
+    private void rebindListState() {
+        rebindStartNanos = System.nanoTime();
+        scrollRestorePending = true;
+        if (listState.multiSelectMode) {
+            showMultiSelectControls();
         }
-        
-        List<String> filteredList = new ArrayList<>();
-        if (TextUtils.isEmpty(query)) {
-            filteredList.addAll(allPasswords);
-        } else {
-            String lowerQuery = query.toLowerCase();
-            for (String passwordData : allPasswords) {
-                if (passwordData.toLowerCase().contains(lowerQuery)) {
-                    filteredList.add(passwordData);
-                }
+        filterPasswords(searchEditText != null ? searchEditText.getText().toString() : "");
+    }
+
+    private void saveScrollPosition() {
+        if (passwordRecyclerView == null || listState == null) return;
+        RecyclerView.LayoutManager lm = passwordRecyclerView.getLayoutManager();
+        if (!(lm instanceof LinearLayoutManager)) return;
+        int position = ((LinearLayoutManager) lm).findFirstVisibleItemPosition();
+        View first = position != RecyclerView.NO_POSITION ? lm.findViewByPosition(position) : null;
+        listState.scrollPosition = position;
+        listState.scrollOffset = first != null ? first.getTop() - passwordRecyclerView.getPaddingTop() : 0;
+    }
+
+    private void restoreScrollPosition() {
+        RecyclerView.LayoutManager lm = passwordRecyclerView != null ? passwordRecyclerView.getLayoutManager() : null;
+        if (lm instanceof LinearLayoutManager && listState.scrollPosition >= 0) {
+            ((LinearLayoutManager) lm).scrollToPositionWithOffset(listState.scrollPosition, listState.scrollOffset);
+        }
+        Log.d(TAG, "重建绑定耗时: " + (System.nanoTime() - rebindStartNanos) / 1000000L + " ms");
+    }
+
+    private void renderPasswords(List<String> keys, String query) {
+        List<PasswordListAdapter.Row> rows = new ArrayList<>(keys.size());
+        List<String> filteredKeys = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            PasswordListAdapter.Row row = listState.rowsByKey.get(key);
+            if (row != null) {
+                rows.add(row);
+                filteredKeys.add(key);
             }
         }
-        
-        if (filteredList.isEmpty()) {
-            if (TextUtils.isEmpty(query) && allPasswords.isEmpty()) {
-                showEmptyState(); // No passwords at all
-            } else if (!allPasswords.isEmpty()) {
-                // TODO: Maybe show a "No results found" state instead of generic empty state
-                // For now, just show nothing or the empty state
-                showEmptyState(); 
+        showRows(rows, filteredKeys);
+    }
+
+    private void showRows(List<PasswordListAdapter.Row> rows, List<String> keys) {
+        displayedRows = rows;
+        displayedKeys = keys;
+        if (passwordListAdapter != null) {
+            if (firstRowPending && !rows.isEmpty()) {
+                firstRowPending = false;
+                final long startNanos = loadStartNanos;
+                passwordListAdapter.submitList(rows, () -> {
+                    long now = System.nanoTime();
+                    timeToFirstRowMillis = (now - startNanos) / 1000000L;
+                    VaultMetrics.LIST_FIRST_ROW.record(now - startNanos);
+                    Log.d(TAG, "首屏耗时: " + timeToFirstRowMillis + " ms");
+                    if (loginStartedNanos != 0) {
+                        // 只统计登录后的第一次渲染
+                        Log.d(TAG, "登录到首屏耗时: " + (now - loginStartedNanos) / 1000000L + " ms");
+                        loginStartedNanos = 0;
+                    }
+                });
+            } else if (scrollRestorePending) {
+                scrollRestorePending = false;
+                passwordListAdapter.submitList(rows, this::restoreScrollPosition);
             } else {
-                 showEmptyState();
+                passwordListAdapter.submitList(rows);
             }
+        }
+        
+        if (rows.isEmpty()) {
+            // TODO: Maybe show a "No results found" state instead of generic empty state
+            showEmptyState();
         } else {
             hideEmptyState();
-            for (String passwordData : filteredList) {
-                addPasswordCard(passwordData);
-            }
         }
     }
     
-    private void addPasswordCard(String passwordData) {
-        try {
-            // 解析密码数据
-            String[] lines = passwordData.split("\n");
-            if (lines.length < 3) return;
-            
-            String siteName = lines[0].replace("网站: ", "").trim();
-            String username = lines[1].replace("用户名: ", "").trim();
-            String password = lines[2].replace("密码: ", "").trim();
-            
-            // 解析备注 (向后兼容)
-            String noteTemp = "";
-            if (lines.length >= 4) {
-                // 查找包含"备注: "的行，因为可能没有备注或者位置不对（虽然格式是固定的）
-                // 这里假设格式固定为第4行
-                String line3 = lines[3];
-                if (line3.startsWith("备注: ")) {
-                    noteTemp = line3.replace("备注: ", "").trim();
-                }
-            }
-            final String note = noteTemp;
-            
-            // Inflate XML layout
-            View cardView = LayoutInflater.from(this).inflate(R.layout.item_password_card, passwordListContainer, false);
-            
-            // Find Views
-            TextView siteNameTextView = cardView.findViewById(R.id.siteNameTextView);
-            TextView usernameTextView = cardView.findViewById(R.id.usernameTextView);
-            TextView passwordTextView = cardView.findViewById(R.id.passwordTextView);
-            LinearLayout noteContainer = cardView.findViewById(R.id.noteContainer);
-            TextView noteTextView = cardView.findViewById(R.id.noteTextView);
-            
-            View copyButton = cardView.findViewById(R.id.copyButton);
-            View togglePasswordButton = cardView.findViewById(R.id.togglePasswordButton);
-            View editButton = cardView.findViewById(R.id.editButton);
-            View deleteButton = cardView.findViewById(R.id.deleteButton);
-            android.widget.CheckBox selectCheckBox = cardView.findViewById(R.id.selectCheckBox);
-            
-            if (siteNameTextView == null || usernameTextView == null || passwordTextView == null || 
-                noteContainer == null || noteTextView == null) {
-                Log.e(TAG, "Critical views missing in password card layout");
-                return;
-            }
+    /**
+     * 保存成功后增量更新内存列表和搜索索引，不再重新解密整个密码库。
+     * 备注属于机密部分，不进入搜索索引。
+     */
+    private void onEntrySaved(PasswordEntry entry) {
+        String key = passwordManager.buildKey(entry.getSiteName(), entry.getUsername());
+        listState.removedWhileLoading.remove(key);
+        listState.rowsByKey.put(key, new PasswordListAdapter.Row(key, new EntryMetadata(entry.getSiteName(), entry.getUsername())));
+        listState.searchIndex.put(key, entry.getSiteName(), entry.getUsername());
+        if (passwordListAdapter != null) {
+            passwordListAdapter.hideSecret(key);
+        }
+        filterPasswords(searchEditText != null ? searchEditText.getText().toString() : "");
+    }
 
-            // Bind Data
-            siteNameTextView.setText(siteName);
-            usernameTextView.setText(username);
-            passwordTextView.setText("••••••••"); // Default hidden
-            
-            if (!TextUtils.isEmpty(note)) {
-                noteTextView.setText(note);
-                noteContainer.setVisibility(View.VISIBLE);
-            } else {
-                noteContainer.setVisibility(View.GONE);
-            }
-            
-            // Setup Listeners
-            copyButton.setOnClickListener(v -> {
-                copyToClipboard(password);
-                Toast.makeText(this, "密码已复制", Toast.LENGTH_SHORT).show();
-            });
-            
-            togglePasswordButton.setOnClickListener(v -> {
-                String currentText = passwordTextView.getText().toString();
-                if (currentText.contains("••••••••")) {
-                    passwordTextView.setText(password);
-                    if (togglePasswordButton instanceof android.widget.ImageButton) {
-                         ((android.widget.ImageButton)togglePasswordButton).setImageResource(R.drawable.ic_visibility_off);
-                    }
-                } else {
-                    passwordTextView.setText("••••••••");
-                    if (togglePasswordButton instanceof android.widget.ImageButton) {
-                        ((android.widget.ImageButton)togglePasswordButton).setImageResource(R.drawable.ic_visibility);
-                    }
-                }
-            });
-            
-            final String compositeKey = new PasswordManager(this).buildKey(siteName, username);
-            editButton.setOnClickListener(v -> {
-                showEditPasswordDialog(siteName, username, password, note);
-            });
-            
-            deleteButton.setOnClickListener(v -> {
-                showDeleteConfirmationDialog(siteName, username);
-            });
+    private void onEntryRemoved(String siteName, String username) {
+        String key = passwordManager.buildKey(siteName, username);
+        listState.rowsByKey.remove(key);
+        listState.searchIndex.remove(key);
+        listState.selectedKeys.remove(key);
+        if (!listState.loaded) {
+            listState.removedWhileLoading.add(key);
+        }
+        if (passwordListAdapter != null) {
+            passwordListAdapter.hideSecret(key);
+        }
+        filterPasswords(searchEditText != null ? searchEditText.getText().toString() : "");
+    }
 
-            if (selectCheckBox != null) {
-                if (multiSelectMode) {
-                    selectCheckBox.setVisibility(View.VISIBLE);
-                    editButton.setVisibility(View.GONE);
-                    deleteButton.setVisibility(View.GONE);
-                } else {
-                    selectCheckBox.setVisibility(View.GONE);
-                    editButton.setVisibility(View.VISIBLE);
-                    deleteButton.setVisibility(View.VISIBLE);
-                }
-                selectCheckBox.setChecked(selectedKeys.contains(compositeKey));
-                selectCheckBox.setOnCheckedChangeListener((buttonView, isChecked) -> {
-                    if (isChecked) {
-                        selectedKeys.add(compositeKey);
+    @Override
+    public void onCopyPassword(PasswordListAdapter.Row row) {
+        withSecret(row, entry -> {
+            copyToClipboard(entry.getPassword());
+            Toast.makeText(this, "密码已复制", Toast.LENGTH_SHORT).show();
+        });
+    }
+
+    @Override
+    public void onRevealPassword(PasswordListAdapter.Row row) {
+        withSecret(row, entry -> passwordListAdapter.showSecret(row.getKey(), entry));
+    }
+
+    @Override
+    public void onEditEntry(PasswordListAdapter.Row row) {
+        withSecret(row, entry ->
+                showEditPasswordDialog(entry.getSiteName(), entry.getUsername(), entry.getPassword(), entry.getNote()));
+    }
+
+    @Override
+    public void onDeleteEntry(PasswordListAdapter.Row row) {
+        EntryMetadata metadata = row.getMetadata();
+        showDeleteConfirmationDialog(metadata.getSiteName(), metadata.getUsername());
+    }
+
+    private interface SecretAction {
+        void run(PasswordEntry entry);
+    }
+
+    /**
+     * 在后台只解密这一条的完整内容，然后在主线程上交给 action；解密结果不做缓存。
+     */
+    private void withSecret(PasswordListAdapter.Row row, SecretAction action) {
+        EntryMetadata metadata = row.getMetadata();
+        executor.execute(() -> {
+            try {
+                PasswordEntry secret = passwordManager.getEntry(metadata.getSiteName(), metadata.getUsername());
+                runOnUiThread(() -> {
+                    if (secret != null) {
+                        action.run(secret);
                     } else {
-                        selectedKeys.remove(compositeKey);
+                        Toast.makeText(this, "条目不存在", Toast.LENGTH_SHORT).show();
                     }
                 });
+            } catch (Exception e) {
+                Log.e(TAG, "解密条目失败", e);
+                runOnUiThread(() -> Toast.makeText(this, "解密失败: " + e.getMessage(), Toast.LENGTH_SHORT).show());
             }
-            
-            // Add to container
-            if (passwordListContainer != null) {
-                passwordListContainer.addView(cardView);
-            }
-            
-        } catch (Exception e) {
-            Log.e(TAG, "添加密码卡片时出错", e);
+        });
+    }
+
+    @Override
+    public boolean isMultiSelectMode() {
+        return listState.multiSelectMode;
+    }
+
+    @Override
+    public boolean isSelected(String key) {
+        return listState.selectedKeys.contains(key);
+    }
+
+    @Override
+    public void onSelectionChanged(String key, boolean selected) {
+        if (selected) {
+            listState.selectedKeys.add(key);
+        } else {
+            listState.selectedKeys.remove(key);
+        }
+    }
+
+    private void refreshSelection() {
+        if (passwordListAdapter != null) {
+            passwordListAdapter.refreshSelection();
         }
     }
 
     private void onBulkDeleteClicked() {
-        if (!multiSelectMode) {
-            multiSelectMode = true;
-            selectedKeys.clear();
-            if (bulkDeleteButton != null) {
-                bulkDeleteButton.setText("删除已选");
-            }
-            addPasswordButton.setText("取消");
-            if (selectAllButton != null) {
-                selectAllButton.setVisibility(View.VISIBLE);
-                selectAllButton.setText("全选");
-            }
-            filterPasswords(searchEditText != null ? searchEditText.getText().toString() : "");
+        if (!listState.multiSelectMode) {
+            listState.multiSelectMode = true;
+            listState.selectedKeys.clear();
+            showMultiSelectControls();
+            refreshSelection();
             Toast.makeText(this, "请选择要删除的条目", Toast.LENGTH_SHORT).show();
             return;
         }
 
-        if (selectedKeys.isEmpty()) {
+        if (listState.selectedKeys.isEmpty()) {
             Toast.makeText(this, "未选择任何条目", Toast.LENGTH_SHORT).show();
             return;
         }
 
         new AlertDialog.Builder(this)
                 .setTitle("确认批量删除")
-                .setMessage("确定删除所选的 " + selectedKeys.size() + " 个条目吗？")
+                .setMessage("确定删除所选的 " + listState.selectedKeys.size() + " 个条目吗？")
                 .setPositiveButton("删除", (dialog, which) -> {
-                    int success = 0;
-                    for (String key : selectedKeys) {
-                        String[] parts = key.replace("password_", "").split("\\|", -1);
-                        String site = parts.length > 0 ? parts[0] : "";
-                        String user = parts.length > 1 ? parts[1] : "";
-                        if (passwordManager.deletePasswordBySiteAndUser(site, user)) {
-                            success++;
+                    final List<String> keys = new ArrayList<>(listState.selectedKeys);
+                    final List<EntryMetadata> entries = new ArrayList<>(keys.size());
+                    for (String key : keys) {
+                        PasswordListAdapter.Row row = listState.rowsByKey.get(key);
+                        if (row != null) {
+                            entries.add(row.getMetadata());
+                        } else {
+                            String[] parts = key.replace("password_", "").split("\\|", -1);
+                            entries.add(new EntryMetadata(parts.length > 0 ? parts[0] : "", parts.length > 1 ? parts[1] : ""));
                         }
                     }
-                    Toast.makeText(this, "已删除 " + success + " 个条目", Toast.LENGTH_SHORT).show();
-                    cancelMultiSelectMode();
-                    loadPasswordList();
+                    final int[] success = new int[1];
+                    // 一次提交删除全部所选条目，在后台完成
+                    runAsync("正在删除...", () -> {
+                        success[0] = passwordManager.deletePasswords(entries);
+                    }, () -> {
+                        SearchIndex.Editor indexEditor = listState.searchIndex.edit();
+                        for (String key : keys) {
+                            listState.rowsByKey.remove(key);
+                            indexEditor.remove(key);
+                            if (!listState.loaded) {
+                                listState.removedWhileLoading.add(key);
+                            }
+                        }
+                        indexEditor.commit();
+                        Toast.makeText(this, "已删除 " + success[0] + " 个条目", Toast.LENGTH_SHORT).show();
+                        cancelMultiSelectMode();
+                        filterPasswords(searchEditText != null ? searchEditText.getText().toString() : "");
+                    });
                 })
                 .setNegativeButton("取消", null)
                 .show();
     }
 
+    private void showMultiSelectControls() {
+        if (bulkDeleteButton != null) {
+            bulkDeleteButton.setText("删除已选");
+        }
+        addPasswordButton.setText("取消");
+        if (selectAllButton != null) {
+            selectAllButton.setVisibility(View.VISIBLE);
+            selectAllButton.setText("全选");
+        }
+    }
+
     private void cancelMultiSelectMode() {
-        multiSelectMode = false;
-        selectedKeys.clear();
+        listState.multiSelectMode = false;
+        listState.selectedKeys.clear();
         if (bulkDeleteButton != null) {
             bulkDeleteButton.setText("批量删除");
         }
@@ -469,43 +664,25 @@ public class MainActivity extends AppCompatActivity {
         if (selectAllButton != null) {
             selectAllButton.setVisibility(View.GONE);
         }
-        filterPasswords(searchEditText != null ? searchEditText.getText().toString() : "");
+        refreshSelection();
     }
 
     private void onSelectAllClicked() {
         try {
-            String query = searchEditText != null ? searchEditText.getText().toString() : "";
-            List<String> source = new ArrayList<>();
-            if (TextUtils.isEmpty(query)) { source.addAll(allPasswords); } else {
-                String lower = query.toLowerCase();
-                for (String p : allPasswords) if (p.toLowerCase().contains(lower)) source.add(p);
-            }
+            List<String> source = displayedKeys;
             if (source.isEmpty()) return;
-            boolean allSelected = true;
-            for (String p : source) {
-                String key = computeCompositeKeyFrom(p);
-                if (!selectedKeys.contains(key)) { allSelected = false; break; }
-            }
+            boolean allSelected = listState.selectedKeys.containsAll(source);
             if (allSelected) {
-                for (String p : source) selectedKeys.remove(computeCompositeKeyFrom(p));
+                listState.selectedKeys.removeAll(source);
                 if (selectAllButton != null) selectAllButton.setText("全选");
             } else {
-                for (String p : source) selectedKeys.add(computeCompositeKeyFrom(p));
+                listState.selectedKeys.addAll(source);
                 if (selectAllButton != null) selectAllButton.setText("全不选");
             }
-            filterPasswords(query);
+            refreshSelection();
         } catch (Exception ignored) {}
     }
 
-    private String computeCompositeKeyFrom(String passwordData) {
-        try {
-            String[] lines = passwordData.split("\n");
-            String siteName = lines.length > 0 ? lines[0].replace("网站: ", "").trim() : "";
-            String username = lines.length > 1 ? lines[1].replace("用户名: ", "").trim() : "";
-            return new PasswordManager(this).buildKey(siteName, username);
-        } catch (Exception e) { return ""; }
-    }
-
     private void showChangeMasterPasswordDialog() {
         try {
             AlertDialog.Builder builder = new AlertDialog.Builder(this);
@@ -532,29 +709,17 @@ public class MainActivity extends AppCompatActivity {
                     return;
                 }
 
-                SharedPreferences auth = getSharedPreferences("VaultAIAuth", MODE_PRIVATE);
-                String storedHash = auth.getString("master_password_hash", null);
-                if (storedHash == null) {
-                    Toast.makeText(this, "尚未设置主密码", Toast.LENGTH_SHORT).show();
-                    return;
-                }
-                if (!hashPassword(current).equals(storedHash)) {
-                    Toast.makeText(this, "当前主密码错误", Toast.LENGTH_SHORT).show();
-                    return;
-                }
-
-                boolean ok = passwordManager.reEncryptAll(current, newPwd);
-                if (!ok) {
-                    Toast.makeText(this, "重新加密数据失败", Toast.LENGTH_SHORT).show();
-                    return;
-                }
-
-                auth.edit()
-                        .putString("master_password_hash", hashPassword(newPwd))
-                        .putString("master_password", newPwd)
-                        .apply();
-                masterPassword = newPwd;
-                Toast.makeText(this, "主密码已更新", Toast.LENGTH_SHORT).show();
+                // 当前主密码由 changeMasterPassword 对照校验值验证
+                final boolean[] ok = new boolean[1];
+                runMigrationAsync("正在更新主密码...",
+                        listener -> ok[0] = session.changeMasterPassword(current, newPwd, listener),
+                        () -> {
+                            if (!ok[0]) {
+                                Toast.makeText(this, "当前主密码错误或重新加密数据失败", Toast.LENGTH_SHORT).show();
+                                return;
+                            }
+                            Toast.makeText(this, "主密码已更新", Toast.LENGTH_SHORT).show();
+                        });
             });
 
             builder.setNegativeButton("取消", null);
@@ -563,12 +728,15 @@ public class MainActivity extends AppCompatActivity {
                         .setTitle("重置数据")
                         .setMessage("这将清除所有密码和登录信息，是否继续？")
                         .setPositiveButton("清除", (d, w) -> {
-                            getSharedPreferences("VaultAIPasswords", MODE_PRIVATE).edit().clear().apply();
+                            try {
+                                passwordManager.clearAll();
+                            } catch (Exception e) {
+                                Log.e(TAG, "清除密码库失败", e);
+                            }
                             getSharedPreferences("VaultAIAuth", MODE_PRIVATE).edit().clear().apply();
                             Toast.makeText(this, "已清除所有数据", Toast.LENGTH_SHORT).show();
-                            Intent intent = new Intent(this, LoginActivity.class);
-                            startActivity(intent);
-                            finish();
+                            // 锁定会话后由 sessionListener 回到登录页
+                            session.lock();
                         })
                         .setNegativeButton("取消", null)
                         .show();
@@ -581,124 +749,124 @@ public class MainActivity extends AppCompatActivity {
         }
     }
 
-    private String hashPassword(String password) {
-        return String.valueOf(password.hashCode());
-    }
-
+    /**
+     * 通过 ExportPipeline 并行解密、按序写入流式导出格式，内存占用与条目数量无关。
+     */
     private void exportPasswordsToUri(android.net.Uri uri) {
         try {
             final android.net.Uri furi = uri;
-            final java.util.concurrent.atomic.AtomicInteger total = new java.util.concurrent.atomic.AtomicInteger();
-            final java.util.concurrent.atomic.AtomicInteger exported = new java.util.concurrent.atomic.AtomicInteger();
-            final java.util.concurrent.atomic.AtomicInteger failed = new java.util.concurrent.atomic.AtomicInteger();
+            final ExportPipeline pipeline = new ExportPipeline(passwordManager);
+            final String[] error = new String[1];
             runAsync("正在导出...", () -> {
-                try {
-                    SharedPreferences prefs = getSharedPreferences("VaultAIPasswords", MODE_PRIVATE);
-                    java.util.List<String> keys = new java.util.ArrayList<>();
-                    for (String key : prefs.getAll().keySet()) {
-                        if (key.startsWith("password_")) {
-                            String enc = prefs.getString(key, null);
-                            if (enc != null && !enc.trim().isEmpty()) keys.add(key);
-                        }
-                    }
-                    java.util.List<org.json.JSONObject> list = new java.util.ArrayList<>(keys.size());
-                    java.util.List<java.util.concurrent.Callable<org.json.JSONObject>> tasks = new java.util.ArrayList<>();
-                    for (String key : keys) {
-                        tasks.add(() -> {
-                            try {
-                                String enc = prefs.getString(key, null);
-                                if (enc == null) return null;
-                                total.incrementAndGet();
-                                String plain = passwordManager.decryptData(enc, masterPassword);
-                                String[] lines = plain.split("\n");
-                                String siteName = lines[0].replace("网站: ", "").trim();
-                                String username = lines[1].replace("用户名: ", "").trim();
-                                String password = lines[2].replace("密码: ", "").trim();
-                                String note = lines.length >= 4 && lines[3].startsWith("备注: ") ? lines[3].replace("备注: ", "").trim() : "";
-                                org.json.JSONObject obj = new org.json.JSONObject();
-                                obj.put("siteName", siteName);
-                                obj.put("username", username);
-                                obj.put("password", password);
-                                obj.put("note", note);
-                                exported.incrementAndGet();
-                                return obj;
-                            } catch (Exception e) {
-                                failed.incrementAndGet();
-                                return null;
-                            }
-                        });
-                    }
-                    java.util.List<java.util.concurrent.Future<org.json.JSONObject>> futures = ((java.util.concurrent.ExecutorService) executor).invokeAll(tasks);
-                    for (java.util.concurrent.Future<org.json.JSONObject> f : futures) {
-                        try {
-                            org.json.JSONObject obj = f.get();
-                            if (obj != null) list.add(obj);
-                        } catch (Exception ignored) {}
-                    }
-                    org.json.JSONArray arr = new org.json.JSONArray();
-                    for (org.json.JSONObject obj : list) arr.put(obj);
-                    String json = arr.toString();
-                    String cipherText = passwordManager.encryptForExportV2(json, masterPassword);
-                    try (java.io.OutputStream os = getContentResolver().openOutputStream(furi, "w")) {
-                        if (os == null) throw new java.io.IOException("openOutputStream returned null");
-                        os.write(cipherText.getBytes(java.nio.charset.StandardCharsets.UTF_8));
-                    }
+                long t = VaultMetrics.start();
+                try (java.io.OutputStream os = getContentResolver().openOutputStream(furi, "w")) {
+                    if (os == null) throw new java.io.IOException("openOutputStream returned null");
+                    VaultExport.Writer writer = passwordManager.openExportWriter(new java.io.BufferedOutputStream(os));
+                    pipeline.run(writer);
+                    writer.close();
                 } catch (Exception ex) {
+                    Log.e(TAG, "导出失败", ex);
+                    error[0] = ex.getMessage();
+                }
+                VaultMetrics.EXPORT_TOTAL.stop(t);
+                ExportPipeline.Metrics m = pipeline.getMetrics();
+                VaultTrace.log(VaultTrace.EXPORT, m.getElapsedMillis(), m.getWritten(), (int) m.getFailed());
+                Log.d(TAG, "导出: " + m);
+            }, () -> {
+                ExportPipeline.Metrics m = pipeline.getMetrics();
+                if (error[0] != null) {
+                    Toast.makeText(this, "导出失败: " + error[0], Toast.LENGTH_LONG).show();
+                } else {
+                    long total = m.getWritten() + m.getFailed();
+                    Toast.makeText(this, "导出成功：总计 " + total + "，成功 " + m.getWritten() + "，失败 " + m.getFailed(), Toast.LENGTH_LONG).show();
                 }
-            }, () -> Toast.makeText(this, "导出成功：总计 " + total.get() + "，成功 " + exported.get() + "，失败 " + failed.get(), Toast.LENGTH_LONG).show());
+            });
         } catch (Exception e) {
             Toast.makeText(this, "导出失败: " + e.getMessage(), Toast.LENGTH_SHORT).show();
         }
     }
 
+    /**
+     * 先流式扫描一遍导入文件得到预览数据，确认后再扫描一遍分批写入，内存中最多保留一批条目。
+     */
     private void importPasswordsFromUri(android.net.Uri uri) {
         try {
             final android.net.Uri furi = uri;
+            final VaultImporter importer = new VaultImporter(passwordManager);
+            final VaultImporter.Preview[] preview = new VaultImporter.Preview[1];
+            final String[] error = new String[1];
             runAsync("正在读取...", () -> {
+                long t = VaultMetrics.start();
                 try {
-                    String cipherText;
-                    try (java.io.InputStream is = getContentResolver().openInputStream(furi);
-                         java.io.ByteArrayOutputStream bos = new java.io.ByteArrayOutputStream()) {
-                        if (is == null) throw new java.io.IOException("openInputStream returned null");
-                        byte[] buf = new byte[4096];
-                        int n;
-                        while ((n = is.read(buf)) > 0) {
-                            bos.write(buf, 0, n);
-                        }
-                        cipherText = new String(bos.toByteArray(), java.nio.charset.StandardCharsets.UTF_8);
-                    }
-                    String json = passwordManager.decryptData(cipherText, masterPassword);
-                    final org.json.JSONArray arr = new org.json.JSONArray(json);
-                    runOnUiThread(() -> showImportPreviewDialog(arr));
-                } catch (Exception ignored) {}
-            }, null);
+                    preview[0] = importer.preview(openImportSource(furi));
+                } catch (Exception e) {
+                    Log.e(TAG, "读取导入文件失败", e);
+                    error[0] = e.getMessage();
+                }
+                VaultMetrics.IMPORT_PREVIEW.stop(t);
+            }, () -> {
+                if (preview[0] != null) {
+                    showImportPreviewDialog(furi, preview[0]);
+                } else {
+                    Toast.makeText(this, "导入失败: " + error[0], Toast.LENGTH_SHORT).show();
+                }
+            });
         } catch (Exception e) {
             Toast.makeText(this, "导入失败: " + e.getMessage(), Toast.LENGTH_SHORT).show();
         }
     }
 
-    private void showImportPreviewDialog(org.json.JSONArray arr) {
-        try {
-            SharedPreferences prefs = getSharedPreferences("VaultAIPasswords", MODE_PRIVATE);
-            int total = arr.length();
-            java.util.Set<String> existing = new java.util.HashSet<>();
-            for (String k : prefs.getAll().keySet()) if (k.startsWith("password_")) existing.add(k);
-            int duplicates = 0;
-            for (int i = 0; i < arr.length(); i++) {
-                org.json.JSONObject obj = arr.getJSONObject(i);
-                String siteName = obj.optString("siteName", "");
-                String username = obj.optString("username", "");
-                String key = new PasswordManager(this).buildKey(siteName, username);
-                if (existing.contains(key)) {
-                    duplicates++;
-                }
+    /**
+     * 打开导入文件。流式格式逐帧解密；旧版导出整个文件是一段 v2 密文，只能一次性解密。
+     */
+    private VaultImporter.EntrySource openImportSource(android.net.Uri uri) throws Exception {
+        java.io.InputStream raw = getContentResolver().openInputStream(uri);
+        if (raw == null) throw new java.io.IOException("openInputStream returned null");
+        java.io.BufferedInputStream in = new java.io.BufferedInputStream(raw);
+        if (VaultExport.isStreamingExport(in)) {
+            return passwordManager.openExportReader(in);
+        }
+        String cipherText;
+        try (java.io.ByteArrayOutputStream bos = new java.io.ByteArrayOutputStream()) {
+            byte[] buf = new byte[4096];
+            int n;
+            while ((n = in.read(buf)) > 0) {
+                bos.write(buf, 0, n);
+            }
+            cipherText = new String(bos.toByteArray(), java.nio.charset.StandardCharsets.UTF_8);
+        } finally {
+            in.close();
+        }
+        final org.json.JSONArray arr = new org.json.JSONArray(passwordManager.decryptData(cipherText));
+        return new VaultImporter.EntrySource() {
+            private int index;
+
+            @Override
+            public PasswordEntry next() throws java.io.IOException {
+                if (index >= arr.length()) return null;
+                org.json.JSONObject obj = arr.optJSONObject(index++);
+                if (obj == null) return new PasswordEntry("", "", "", "");
+                return new PasswordEntry(obj.optString("siteName", ""), obj.optString("username", ""),
+                        obj.optString("password", ""), obj.optString("note", ""));
             }
 
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    private void showImportPreviewDialog(android.net.Uri uri, VaultImporter.Preview preview) {
+        try {
+            String message = "总计: " + preview.total + "\n重复: " + preview.duplicates;
+            if (preview.invalid > 0) {
+                message += "\n无效: " + preview.invalid;
+            }
             new AlertDialog.Builder(this)
                 .setTitle("导入预览")
-                .setMessage("总计: " + total + "\n重复: " + duplicates + "\n选择导入策略：")
-                .setPositiveButton("全部覆盖", (d, w) -> performImport(arr, true))
-                .setNegativeButton("仅新增", (d, w) -> performImport(arr, false))
+                .setMessage(message + "\n选择导入策略：")
+                .setPositiveButton("全部覆盖", (d, w) -> performImport(uri, true))
+                .setNegativeButton("仅新增", (d, w) -> performImport(uri, false))
                 .setNeutralButton("取消", null)
                 .show();
         } catch (Exception e) {
@@ -707,46 +875,34 @@ public class MainActivity extends AppCompatActivity {
         }
     }
 
-    private void performImport(org.json.JSONArray arr, boolean overwrite) {
+    private void performImport(android.net.Uri uri, boolean overwrite) {
         try {
-            final java.util.concurrent.atomic.AtomicInteger success = new java.util.concurrent.atomic.AtomicInteger();
-            final java.util.concurrent.atomic.AtomicInteger skipped = new java.util.concurrent.atomic.AtomicInteger();
-            final java.util.concurrent.atomic.AtomicInteger overwritten = new java.util.concurrent.atomic.AtomicInteger();
+            final VaultImporter importer = new VaultImporter(passwordManager);
+            final VaultImporter.Result[] result = new VaultImporter.Result[1];
+            final String[] error = new String[1];
             runAsync("正在导入...", () -> {
+                long startNanos = System.nanoTime();
                 try {
-                    SharedPreferences prefs = getSharedPreferences("VaultAIPasswords", MODE_PRIVATE);
-                    java.util.Set<String> existing = new java.util.HashSet<>();
-                    for (String k : prefs.getAll().keySet()) if (k.startsWith("password_")) existing.add(k);
-                    List<PasswordEntry> toSave = new ArrayList<>();
-                    for (int i = 0; i < arr.length(); i++) {
-                        org.json.JSONObject obj = arr.getJSONObject(i);
-                        String siteName = obj.optString("siteName", "");
-                        String username = obj.optString("username", "");
-                        String password = obj.optString("password", "");
-                        String note = obj.optString("note", "");
-                        if (TextUtils.isEmpty(siteName) || TextUtils.isEmpty(username) || TextUtils.isEmpty(password)) {
-                            continue;
-                        }
-                        String keyNew = new PasswordManager(this).buildKey(siteName, username);
-                        boolean exists = existing.contains(keyNew);
-                        if (exists && !overwrite) {
-                            skipped.incrementAndGet();
-                            continue;
-                        }
-                        if (exists && overwrite) {
-                            new PasswordManager(this).deletePasswordBySiteAndUser(siteName, username);
-                            overwritten.incrementAndGet();
-                        }
-                        toSave.add(new PasswordEntry(siteName, username, password, note));
-                    }
-                    if (!toSave.isEmpty()) {
-                        if (passwordManager.savePasswordsBatch(masterPassword, toSave)) {
-                            success.set(toSave.size());
-                        }
-                    }
-                } catch (Exception ignored) {}
+                    result[0] = importer.importEntries(openImportSource(uri), overwrite);
+                } catch (Exception e) {
+                    Log.e(TAG, "导入失败", e);
+                    error[0] = e.getMessage();
+                }
+                long elapsed = System.nanoTime() - startNanos;
+                VaultMetrics.IMPORT_TOTAL.record(elapsed);
+                VaultImporter.Result r = result[0];
+                VaultTrace.log(VaultTrace.IMPORT, elapsed / 1000000L, r != null ? r.saved : 0, r != null ? r.failed : -1);
             }, () -> {
-                Toast.makeText(this, "导入完成：成功 " + success.get() + "，覆盖 " + overwritten.get() + "，跳过 " + skipped.get(), Toast.LENGTH_LONG).show();
+                VaultImporter.Result r = result[0];
+                if (r != null) {
+                    String message = "导入完成：成功 " + r.saved + "，覆盖 " + r.overwritten + "，跳过 " + r.skipped;
+                    if (r.failed > 0) {
+                        message += "，失败 " + r.failed + "（" + r.firstFailure.getMessage() + "）";
+                    }
+                    Toast.makeText(this, message, Toast.LENGTH_LONG).show();
+                } else {
+                    Toast.makeText(this, "导入失败: " + error[0], Toast.LENGTH_LONG).show();
+                }
                 loadPasswordList();
             });
         } catch (Exception e) {
@@ -789,6 +945,8 @@ public class MainActivity extends AppCompatActivity {
             exportPasswordsToUri(uri);
         } else if (requestCode == REQ_IMPORT) {
             importPasswordsFromUri(uri);
+        } else if (requestCode == REQ_SAVE_REPORT) {
+            saveReportToUri(uri);
         }
     }
     
@@ -826,13 +984,13 @@ public class MainActivity extends AppCompatActivity {
                 }
                 
                 final boolean[] ok = new boolean[]{false};
+                final PasswordEntry entry = new PasswordEntry(siteName, username, password, note);
                 runAsync("正在保存...", () -> {
-                    PasswordEntry entry = new PasswordEntry(siteName, username, password, note);
-                    ok[0] = passwordManager.savePassword(masterPassword, entry);
+                    ok[0] = passwordManager.savePassword(entry);
                 }, () -> {
                     if (ok[0]) {
                         Toast.makeText(this, "密码已保存", Toast.LENGTH_SHORT).show();
-                        loadPasswordList();
+                        onEntrySaved(entry);
                     } else {
                         Toast.makeText(this, "保存失败", Toast.LENGTH_SHORT).show();
                     }
@@ -885,18 +1043,21 @@ public class MainActivity extends AppCompatActivity {
                 }
                 
                 // 如果网站或用户名变了，删除旧的
-                if (!oldSiteName.equals(newSiteName) || !oldUsername.equals(newUsername)) {
-                    passwordManager.deletePasswordBySiteAndUser(oldSiteName, oldUsername);
-                }
-                
+                final boolean renamed = !oldSiteName.equals(newSiteName) || !oldUsername.equals(newUsername);
                 final boolean[] ok = new boolean[]{false};
+                final PasswordEntry entry = new PasswordEntry(newSiteName, newUsername, newPassword, newNote);
                 runAsync("正在更新...", () -> {
-                    PasswordEntry entry = new PasswordEntry(newSiteName, newUsername, newPassword, newNote);
-                    ok[0] = passwordManager.savePassword(masterPassword, entry);
+                    if (renamed) {
+                        passwordManager.deletePasswordBySiteAndUser(oldSiteName, oldUsername);
+                    }
+                    ok[0] = passwordManager.savePassword(entry);
                 }, () -> {
+                    if (renamed) {
+                        onEntryRemoved(oldSiteName, oldUsername);
+                    }
                     if (ok[0]) {
                         Toast.makeText(this, "密码已更新", Toast.LENGTH_SHORT).show();
-                        loadPasswordList();
+                        onEntrySaved(entry);
                     } else {
                         Toast.makeText(this, "更新失败", Toast.LENGTH_SHORT).show();
                     }
@@ -917,14 +1078,17 @@ public class MainActivity extends AppCompatActivity {
             new AlertDialog.Builder(this)
                     .setTitle("确认删除")
                     .setMessage("确定要删除 " + siteName + " / " + username + " 的密码吗？")
-                    .setPositiveButton("删除", (dialog, which) -> {
-                        if (passwordManager.deletePasswordBySiteAndUser(siteName, username)) {
-                            Toast.makeText(this, "已删除", Toast.LENGTH_SHORT).show();
-                            loadPasswordList();
-                        } else {
-                            Toast.makeText(this, "删除失败", Toast.LENGTH_SHORT).show();
-                        }
-                    })
+                    .setPositiveButton("删除", (dialog, which) -> executor.execute(() -> {
+                        boolean removed = passwordManager.deletePasswordBySiteAndUser(siteName, username);
+                        runOnUiThread(() -> {
+                            if (removed) {
+                                Toast.makeText(this, "已删除", Toast.LENGTH_SHORT).show();
+                                onEntryRemoved(siteName, username);
+                            } else {
+                                Toast.makeText(this, "删除失败", Toast.LENGTH_SHORT).show();
+                            }
+                        });
+                    }))
                     .setNegativeButton("取消", null)
                     .show();
         } catch (Exception e) {
@@ -936,14 +1100,56 @@ public class MainActivity extends AppCompatActivity {
         if (emptyStateLayout != null) {
             emptyStateLayout.setVisibility(View.VISIBLE);
         }
+        if (passwordRecyclerView != null) {
+            passwordRecyclerView.setVisibility(View.GONE);
+        }
     }
     
     private void hideEmptyState() {
         if (emptyStateLayout != null) {
             emptyStateLayout.setVisibility(View.GONE);
         }
+        if (passwordRecyclerView != null) {
+            passwordRecyclerView.setVisibility(View.VISIBLE);
+        }
     }
     
+    @Override
+    public void onUserInteraction() {
+        super.onUserInteraction();
+        if (session != null) {
+            session.touch();
+        }
+    }
+
+    /**
+     * 重建（切换主题）时会话保持解锁，只有真正退出主界面时才锁定。清单中声明了 configChanges，
+     * 旋转和深色模式切换不会重建 Activity。
+     */
+    @Override
+    protected void onDestroy() {
+        searchExecutor.shutdownNow();
+        // 已提交的保存、删除等任务照常完成，之后线程退出，不再持有这个 Activity
+        executor.shutdown();
+        if (!isFinishing()) {
+            saveScrollPosition();
+        }
+        if (session != null) {
+            session.removeListener(sessionListener);
+            if (isFinishing()) {
+                session.lock();
+            }
+        }
+        super.onDestroy();
+    }
+
+    private void returnToLogin() {
+        if (isFinishing()) return;
+        getSharedPreferences("VaultAIAuth", MODE_PRIVATE).edit().putBoolean("is_logged_in", false).apply();
+        startActivity(new Intent(this, LoginActivity.class));
+        finish();
+    }
+
     @Override
     public void onBackPressed() {
         try {
@@ -968,12 +1174,109 @@ public class MainActivity extends AppCompatActivity {
             menu.getMenu().add("导出").setOnMenuItemClickListener(item -> { startExportFlow(); return true; });
             menu.getMenu().add("导入").setOnMenuItemClickListener(item -> { startImportFlow(); return true; });
             menu.getMenu().add("切换主题").setOnMenuItemClickListener(item -> { toggleTheme(); return true; });
+            menu.getMenu().add("性能报告").setOnMenuItemClickListener(item -> { showMetricsReport(); return true; });
             menu.show();
         } catch (Exception e) {
             Log.e(TAG, "显示菜单失败", e);
         }
     }
 
+    /**
+     * traceEvents 为附带的最近事件条数，0 表示全部。
+     */
+    private String buildMetricsReport(int traceEvents) {
+        String header = "VaultAI " + android.text.format.DateFormat.format("yyyy-MM-dd HH:mm:ss", System.currentTimeMillis())
+                + "\n" + Build.MANUFACTURER + " " + Build.MODEL + ", Android " + Build.VERSION.RELEASE
+                + " (API " + Build.VERSION.SDK_INT + ")";
+        java.io.File traceFile = VaultAIApp.traceFile(this);
+        return VaultMetrics.dump(header) + "\nwatchdog threshold " + VaultAIApp.watchdog(this).getThresholdMillis() + " ms\n"
+                + MainThreadWatchdog.summarize(traceFile, 10)
+                + "\n" + VaultTrace.decode(traceFile, traceEvents);
+    }
+
+    /**
+     * 显示性能报告（统计数据和主线程卡顿汇总），可以复制、保存到文件、清空，或开关统计。开关状态保存在 metrics_enabled 中。
+     */
+    private void showMetricsReport() {
+        try {
+            LinearLayout layout = new LinearLayout(this);
+            layout.setOrientation(LinearLayout.VERTICAL);
+            layout.setPadding(32, 16, 32, 0);
+            android.widget.CheckBox enabledBox = new android.widget.CheckBox(this);
+            enabledBox.setText("开启统计");
+            enabledBox.setChecked(VaultMetrics.isEnabled());
+            Button resetButton = new Button(this);
+            resetButton.setText("清空");
+            android.widget.ScrollView scroll = new android.widget.ScrollView(this);
+            android.widget.HorizontalScrollView hscroll = new android.widget.HorizontalScrollView(this);
+            final TextView reportView = new TextView(this);
+            reportView.setTypeface(android.graphics.Typeface.MONOSPACE);
+            reportView.setTextSize(11);
+            reportView.setTextIsSelectable(true);
+            reportView.setText(buildMetricsReport(REPORT_TRACE_EVENTS));
+            hscroll.addView(reportView);
+            scroll.addView(hscroll);
+            layout.addView(enabledBox);
+            layout.addView(resetButton);
+            layout.addView(scroll);
+
+            enabledBox.setOnCheckedChangeListener((b, checked) -> {
+                VaultMetrics.setEnabled(checked);
+                getSharedPreferences("VaultAIAuth", MODE_PRIVATE).edit().putBoolean("metrics_enabled", checked).apply();
+                reportView.setText(buildMetricsReport(REPORT_TRACE_EVENTS));
+            });
+            resetButton.setOnClickListener(v -> {
+                VaultMetrics.reset();
+                VaultTrace.clearStalls();
+                reportView.setText(buildMetricsReport(REPORT_TRACE_EVENTS));
+            });
+
+            new AlertDialog.Builder(this)
+                .setTitle("性能报告")
+                .setView(layout)
+                .setPositiveButton("复制", (d, w) -> {
+                    clipboardManager.setPrimaryClip(ClipData.newPlainText("report", reportView.getText()));
+                    Toast.makeText(this, "已复制", Toast.LENGTH_SHORT).show();
+                })
+                .setNeutralButton("保存", (d, w) -> startSaveReportFlow(buildMetricsReport(0)))
+                .setNegativeButton("关闭", null)
+                .show();
+        } catch (Exception e) {
+            Log.e(TAG, "显示性能报告失败", e);
+            Toast.makeText(this, "无法显示性能报告", Toast.LENGTH_SHORT).show();
+        }
+    }
+
+    private void startSaveReportFlow(String report) {
+        try {
+            pendingReport = report;
+            android.content.Intent intent = new android.content.Intent(android.content.Intent.ACTION_CREATE_DOCUMENT);
+            intent.addCategory(android.content.Intent.CATEGORY_OPENABLE);
+            intent.setType("text/plain");
+            intent.putExtra(android.content.Intent.EXTRA_TITLE, "vaultai_metrics.txt");
+            startActivityForResult(intent, REQ_SAVE_REPORT);
+        } catch (Exception e) {
+            Log.e(TAG, "启动保存失败", e);
+            Toast.makeText(this, "无法保存性能报告", Toast.LENGTH_SHORT).show();
+        }
+    }
+
+    private void saveReportToUri(android.net.Uri uri) {
+        final String report = pendingReport;
+        pendingReport = null;
+        if (report == null) return;
+        final String[] error = new String[1];
+        runAsync("正在保存...", () -> {
+            try (java.io.OutputStream os = getContentResolver().openOutputStream(uri, "w")) {
+                if (os == null) throw new java.io.IOException("openOutputStream returned null");
+                os.write(report.getBytes(java.nio.charset.StandardCharsets.UTF_8));
+            } catch (Exception e) {
+                Log.e(TAG, "保存性能报告失败", e);
+                error[0] = e.getMessage();
+            }
+        }, () -> Toast.makeText(this, error[0] == null ? "已保存" : "保存失败: " + error[0], Toast.LENGTH_SHORT).show());
+    }
+
     private void toggleTheme() {
         SharedPreferences prefs = getSharedPreferences("VaultAIAuth", MODE_PRIVATE);
         String mode = prefs.getString("theme_mode", "light");
@@ -998,6 +1301,56 @@ public class MainActivity extends AppCompatActivity {
         return layout;
     }
 
+    private interface MigrationWork {
+        void run(VaultMigrator.Listener listener) throws Exception;
+    }
+
+    /**
+     * 与 runAsync 相同，但对话框会随迁移进度更新已处理条数和吞吐量。
+     */
+    private void runMigrationAsync(String msg, MigrationWork work, Runnable after) {
+        final AlertDialog dialog = new AlertDialog.Builder(this)
+                .setMessage(msg)
+                .setCancelable(false)
+                .create();
+        try {
+            dialog.show();
+        } catch (Exception ignored) {}
+        executor.execute(() -> {
+            try {
+                work.run((done, total, rate) -> runOnUiThread(() -> dialog.setMessage(formatMigrationProgress(done, total, rate))));
+            } catch (Exception e) {
+                Log.e(TAG, "迁移失败", e);
+            }
+            runOnUiThread(() -> {
+                try { if (dialog.isShowing()) dialog.dismiss(); } catch (Exception ignored) {}
+                if (after != null) after.run();
+            });
+        });
+    }
+
+    static String formatMigrationProgress(int done, int total, double rate) {
+        return String.format(java.util.Locale.getDefault(), "正在重新加密 %d/%d（%.0f 条/秒）", done, total, rate);
+    }
+
+    /**
+     * 在后台继续把旧格式条目迁移到数据密钥（包括上次被中断的迁移），不阻塞列表操作。
+     * 在加载列表的后台线程上调用。
+     */
+    private void resumeMigration() {
+        try {
+            if (!passwordManager.hasPendingMigration()) return;
+            VaultMigrator.Result result = passwordManager.migrateToDataKey(
+                    (done, total, rate) -> Log.d(TAG, formatMigrationProgress(done, total, rate)));
+            Log.d(TAG, "迁移完成: " + result.migrated + " 条, " + result.elapsedMillis + " ms");
+            if (!result.failedKeys.isEmpty()) {
+                runOnUiThread(() -> Toast.makeText(this, result.failedKeys.size() + " 个条目无法迁移到新格式", Toast.LENGTH_LONG).show());
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "迁移失败", e);
+        }
+    }
+
     private void runAsync(String msg, Runnable work, Runnable after) {
         try {
             progressDialog = new AlertDialog.Builder(this)
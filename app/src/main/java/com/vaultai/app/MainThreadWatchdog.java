@@ -0,0 +1,222 @@
+package com.vaultai.app;
+
+import android.os.Debug;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.File;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 主线程卡顿检测。
+ *
+ * 后台线程向主线程投递心跳，心跳超过阈值仍未执行即视为卡顿，之后每隔 sampleMillis 抓取一次主线程调用栈，
+ * 直到心跳执行为止。卡顿结束后记录一条 STALL 事件，并把采样文本写入 VaultTrace 的卡顿槽；
+ * 卡顿超过 ANR_MILLIS 时先写一次，以免进程被系统杀死后丢失。心跳间隔等于阈值，超过阈值两倍的卡顿一定会被记录。
+ *
+ * 采样文本中 site 行在前，超出槽大小时截断的是调用栈而不是调用点。
+ */
+public final class MainThreadWatchdog {
+    private static final String TAG = "MainThreadWatchdog";
+    static final long DEFAULT_THRESHOLD_MILLIS = 200;
+    static final long ANR_MILLIS = 5000;
+    private static final int MAX_SAMPLES = 100;
+    private static final int MAX_FRAMES = 32;
+    private static final String APP_PACKAGE = "com.vaultai.app.";
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Thread mainThread = Looper.getMainLooper().getThread();
+    private volatile long thresholdMillis;
+    private volatile Thread thread;
+    // 主线程执行到的最新心跳及其执行时间（uptimeMillis）
+    private volatile long ackedTick;
+    private volatile long ackedAt;
+
+    public MainThreadWatchdog(long thresholdMillis) {
+        setThresholdMillis(thresholdMillis);
+    }
+
+    public void setThresholdMillis(long millis) {
+        thresholdMillis = millis > 0 ? millis : DEFAULT_THRESHOLD_MILLIS;
+    }
+
+    public long getThresholdMillis() {
+        return thresholdMillis;
+    }
+
+    /**
+     * 开始检测，已在运行时不做任何事。应用回到前台时调用。
+     */
+    public synchronized void start() {
+        if (thread != null) return;
+        Thread t = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                loop();
+            }
+        }, "vault-watchdog");
+        t.setDaemon(true);
+        thread = t;
+        t.start();
+    }
+
+    /**
+     * 停止检测。应用进入后台时调用，后台没有界面，主线程的延迟不影响用户。
+     */
+    public synchronized void stop() {
+        Thread t = thread;
+        thread = null;
+        if (t != null) {
+            t.interrupt();
+        }
+    }
+
+    private void loop() {
+        final Thread self = Thread.currentThread();
+        long tick = 0;
+        List<StackTraceElement[]> samples = new ArrayList<>();
+        while (thread == self) {
+            final long current = ++tick;
+            long postedAt = SystemClock.uptimeMillis();
+            mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    ackedAt = SystemClock.uptimeMillis();
+                    ackedTick = current;
+                }
+            });
+            long threshold = thresholdMillis;
+            long sampleMillis = Math.max(10, threshold / 4);
+            long seq = -1;
+            boolean anrWritten = false;
+            samples.clear();
+            try {
+                Thread.sleep(threshold);
+                while (ackedTick < current && thread == self) {
+                    if (samples.size() < MAX_SAMPLES) {
+                        samples.add(mainThread.getStackTrace());
+                    }
+                    long blocked = SystemClock.uptimeMillis() - postedAt;
+                    if (!anrWritten && blocked >= ANR_MILLIS && !Debug.isDebuggerConnected()) {
+                        // 可能即将被系统杀死，先写一次，卡顿结束后用最终结果覆盖同一个槽
+                        long startedAt = System.currentTimeMillis() - blocked;
+                        seq = VaultTrace.recordStall(-1, startedAt, formatRecord(startedAt, blocked, true, samples));
+                        anrWritten = true;
+                    }
+                    Thread.sleep(sampleMillis);
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (samples.isEmpty() || Debug.isDebuggerConnected()) continue;
+            long blocked = ackedAt - postedAt;
+            Log.w(TAG, "主线程卡顿 " + blocked + " ms");
+            VaultTrace.log(VaultTrace.STALL, blocked, samples.size(), blocked >= ANR_MILLIS ? 1 : 0);
+            long startedAt = System.currentTimeMillis() - blocked;
+            VaultTrace.recordStall(seq, startedAt, formatRecord(startedAt, blocked, blocked >= ANR_MILLIS, samples));
+        }
+    }
+
+    /**
+     * 一条卡顿记录。调用点是栈中第一个应用内的帧（不含看门狗自身），没有时取栈顶；
+     * 相同的调用栈合并为一组并注明采样次数。
+     */
+    static String formatRecord(long wallMillis, long blockedMillis, boolean anr, List<StackTraceElement[]> samples) {
+        Map<String, Integer> sites = new LinkedHashMap<>();
+        Map<List<StackTraceElement>, Integer> stacks = new LinkedHashMap<>();
+        for (StackTraceElement[] stack : samples) {
+            increment(sites, callSite(stack), 1);
+            List<StackTraceElement> key = Arrays.asList(stack);
+            Integer n = stacks.get(key);
+            stacks.put(key, n == null ? 1 : n + 1);
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append("stall ").append(blockedMillis).append(" ms at ")
+                .append(new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.US).format(new Date(wallMillis)));
+        if (anr) {
+            sb.append(" ANR");
+        }
+        sb.append(", ").append(samples.size()).append(" samples\n");
+        for (Map.Entry<String, Integer> e : sites.entrySet()) {
+            sb.append("site ").append(e.getValue()).append(' ').append(e.getKey()).append('\n');
+        }
+        for (Map.Entry<List<StackTraceElement>, Integer> e : stacks.entrySet()) {
+            sb.append("stack x").append(e.getValue()).append('\n');
+            List<StackTraceElement> frames = e.getKey();
+            int n = Math.min(frames.size(), MAX_FRAMES);
+            for (int i = 0; i < n; i++) {
+                sb.append("  at ").append(frames.get(i)).append('\n');
+            }
+            if (frames.size() > n) {
+                sb.append("  ... ").append(frames.size() - n).append(" more\n");
+            }
+        }
+        return sb.toString();
+    }
+
+    static String callSite(StackTraceElement[] stack) {
+        for (StackTraceElement frame : stack) {
+            String cls = frame.getClassName();
+            if (cls.startsWith(APP_PACKAGE) && !cls.startsWith(MainThreadWatchdog.class.getName())) {
+                return frame.toString();
+            }
+        }
+        return stack.length > 0 ? stack[0].toString() : "(unknown)";
+    }
+
+    private static void increment(Map<String, Integer> counts, String key, int by) {
+        Integer n = counts.get(key);
+        counts.put(key, n == null ? by : n + by);
+    }
+
+    /**
+     * 汇总 trace 文件卡顿槽中的记录：次数、总时长和采样次数最多的 top 个调用点。完整的采样文本见 VaultTrace.decode()。
+     */
+    public static String summarize(File traceFile, int top) {
+        List<String> records = VaultTrace.readStalls(traceFile);
+        StringBuilder sb = new StringBuilder();
+        if (records.isEmpty()) {
+            return sb.append("main thread stalls: none\n").toString();
+        }
+        Map<String, Integer> sites = new HashMap<>();
+        long totalMillis = 0;
+        int anrs = 0;
+        for (String record : records) {
+            for (String line : record.split("\n")) {
+                if (line.startsWith("stall ")) {
+                    String[] parts = line.split(" ");
+                    try {
+                        totalMillis += Long.parseLong(parts[1]);
+                    } catch (NumberFormatException | ArrayIndexOutOfBoundsException ignored) {}
+                    if (line.contains(" ANR")) anrs++;
+                } else if (line.startsWith("site ")) {
+                    int space = line.indexOf(' ', 5);
+                    if (space < 0) continue;
+                    try {
+                        increment(sites, line.substring(space + 1), Integer.parseInt(line.substring(5, space)));
+                    } catch (NumberFormatException ignored) {}
+                }
+            }
+        }
+        List<Map.Entry<String, Integer>> sorted = new ArrayList<>(sites.entrySet());
+        Collections.sort(sorted, (a, b) -> b.getValue() - a.getValue());
+        sb.append(String.format(Locale.US, "main thread stalls: %d (%d ANR), %d ms total%n",
+                records.size(), anrs, totalMillis));
+        sb.append("top call sites (samples):\n");
+        for (int i = 0; i < Math.min(top, sorted.size()); i++) {
+            sb.append(String.format(Locale.US, "%6d  %s%n", sorted.get(i).getValue(), sorted.get(i).getKey()));
+        }
+        return sb.toString();
+    }
+}
@@ -1,6 +1,17 @@
 package com.vaultai.app;
 
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
 public class PasswordEntry {
+    /**
+     * 二进制编码的首字节。旧的文本格式以 "网站: " 开头，UTF-8 首字节不可能是 0x01，
+     * 因此可以据此区分新旧两种明文格式。
+     */
+    static final byte RECORD_MAGIC = 0x01;
+    private static final byte RECORD_VERSION = 1;
+
     private String siteName;
     private String username;
     private String password;
@@ -33,6 +44,136 @@ public class PasswordEntry {
         return note;
     }
     
+    /**
+     * 编码为长度前缀的二进制格式：[magic][version]，随后四个字段各为 [len:4][UTF-8 bytes]。
+     */
+    public byte[] toBytes() {
+        byte[] site = siteName.getBytes(StandardCharsets.UTF_8);
+        byte[] user = username.getBytes(StandardCharsets.UTF_8);
+        byte[] pass = password.getBytes(StandardCharsets.UTF_8);
+        byte[] n = note.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer out = ByteBuffer.allocate(2 + 16 + site.length + user.length + pass.length + n.length);
+        out.put(RECORD_MAGIC).put(RECORD_VERSION);
+        out.putInt(site.length).put(site);
+        out.putInt(user.length).put(user);
+        out.putInt(pass.length).put(pass);
+        out.putInt(n.length).put(n);
+        return out.array();
+    }
+
+    public static boolean isBinaryRecord(byte[] data) {
+        return data != null && data.length >= 2 && data[0] == RECORD_MAGIC;
+    }
+
+    /**
+     * 解码 toBytes() 的输出，格式不正确时抛出 IllegalArgumentException。
+     */
+    public static PasswordEntry fromBytes(byte[] data) {
+        if (!isBinaryRecord(data) || data[1] != RECORD_VERSION) {
+            throw new IllegalArgumentException("Not a binary password record");
+        }
+        return fromBuffer(ByteBuffer.wrap(data));
+    }
+
+    /**
+     * 从堆内存 buffer 的 position 到 limit 之间解码一条二进制记录，格式不正确时抛出 IllegalArgumentException。
+     */
+    public static PasswordEntry fromBuffer(ByteBuffer in) {
+        if (in.remaining() < 2 || in.get() != RECORD_MAGIC || in.get() != RECORD_VERSION) {
+            throw new IllegalArgumentException("Not a binary password record");
+        }
+        try {
+            String site = readField(in);
+            String user = readField(in);
+            String pass = readField(in);
+            String n = readField(in);
+            return new PasswordEntry(site, user, pass, n);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Truncated password record", e);
+        }
+    }
+
+    /**
+     * 拆分存储中单独加密的元数据部分：[len:4][网站名][len:4][用户名]。
+     */
+    byte[] metadataBytes() {
+        return encodeFields(siteName, username);
+    }
+
+    /**
+     * 拆分存储中单独加密的机密部分：[len:4][密码][len:4][备注]。
+     */
+    byte[] secretBytes() {
+        return encodeFields(password, note);
+    }
+
+    /**
+     * 由已解密的元数据和机密部分组装完整条目，格式不正确时抛出 IllegalArgumentException。
+     */
+    static PasswordEntry fromParts(EntryMetadata metadata, ByteBuffer secret) {
+        try {
+            String pass = readField(secret);
+            String n = readField(secret);
+            return new PasswordEntry(metadata.getSiteName(), metadata.getUsername(), pass, n);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Truncated secret record", e);
+        }
+    }
+
+    private static byte[] encodeFields(String first, String second) {
+        byte[] a = first.getBytes(StandardCharsets.UTF_8);
+        byte[] b = second.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer out = ByteBuffer.allocate(8 + a.length + b.length);
+        out.putInt(a.length).put(a);
+        out.putInt(b.length).put(b);
+        return out.array();
+    }
+
+    static String readField(ByteBuffer in) {
+        int len = in.getInt();
+        if (len < 0 || len > in.remaining()) {
+            throw new IndexOutOfBoundsException("Invalid field length " + len);
+        }
+        String value = new String(in.array(), in.arrayOffset() + in.position(), len, StandardCharsets.UTF_8);
+        in.position(in.position() + len);
+        return value;
+    }
+
+    /**
+     * 解析 toString() 生成的文本格式（旧版记录的明文格式），行数不足时返回 null。
+     */
+    public static PasswordEntry fromDisplayText(String text) {
+        if (text == null) return null;
+        String[] lines = text.split("\n");
+        if (lines.length < 3) return null;
+        String siteName = lines[0].replace("网站: ", "").trim();
+        String username = lines[1].replace("用户名: ", "").trim();
+        String password = lines[2].replace("密码: ", "").trim();
+        String note = "";
+        if (lines.length >= 4 && lines[3].startsWith("备注: ")) {
+            note = lines[3].replace("备注: ", "").trim();
+        }
+        return new PasswordEntry(siteName, username, password, note);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof PasswordEntry)) return false;
+        PasswordEntry other = (PasswordEntry) o;
+        return siteName.equals(other.siteName) && username.equals(other.username)
+                && password.equals(other.password) && note.equals(other.note);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = siteName.hashCode();
+        result = 31 * result + username.hashCode();
+        result = 31 * result + password.hashCode();
+        result = 31 * result + note.hashCode();
+        return result;
+    }
+
     @Override
     public String toString() {
         return "网站: " + siteName + "\n" +
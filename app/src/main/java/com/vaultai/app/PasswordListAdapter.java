@@ -0,0 +1,240 @@
+package com.vaultai.app;
+
+import android.text.TextUtils;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.CheckBox;
+import android.widget.ImageButton;
+import android.widget.LinearLayout;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 密码列表的 RecyclerView 适配器。只绑定可见的行，列表更新由 DiffUtil 在后台线程计算差异，
+ * 行 ID 由复合 key 派生，保证刷新和滚动时条目身份稳定。
+ * 多选状态保存在 Activity 的 selectedKeys 中，行被回收后重新绑定时会按 key 恢复。
+ * 行只持有网站名和用户名；点击显示时由 Activity 解密机密部分并通过 showSecret 交回，隐藏后即丢弃。
+ */
+public class PasswordListAdapter extends ListAdapter<PasswordListAdapter.Row, PasswordListAdapter.ViewHolder> {
+    private static final String MASK = "••••••••";
+    private static final Object PAYLOAD_SELECTION = new Object();
+
+    public interface Listener {
+        void onCopyPassword(Row row);
+
+        /**
+         * 请求显示密码和备注。解密完成后应调用 showSecret。
+         */
+        void onRevealPassword(Row row);
+
+        void onEditEntry(Row row);
+
+        void onDeleteEntry(Row row);
+
+        boolean isMultiSelectMode();
+
+        boolean isSelected(String key);
+
+        void onSelectionChanged(String key, boolean selected);
+    }
+
+    public static final class Row {
+        final String key;
+        final long id;
+        final EntryMetadata metadata;
+
+        public Row(String key, EntryMetadata metadata) {
+            this.key = key;
+            this.id = stableId(key);
+            this.metadata = metadata;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public EntryMetadata getMetadata() {
+            return metadata;
+        }
+    }
+
+    private static final DiffUtil.ItemCallback<Row> DIFF = new DiffUtil.ItemCallback<Row>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Row oldItem, @NonNull Row newItem) {
+            return oldItem.key.equals(newItem.key);
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Row oldItem, @NonNull Row newItem) {
+            return oldItem.metadata.equals(newItem.metadata);
+        }
+    };
+
+    private final Listener listener;
+    // 当前处于明文显示状态的条目及其解密出的机密，隐藏时移除
+    private final Map<String, PasswordEntry> revealedSecrets = new HashMap<>();
+
+    public PasswordListAdapter(Listener listener) {
+        super(DIFF);
+        this.listener = listener;
+        setHasStableIds(true);
+    }
+
+    /**
+     * 由复合 key 计算 64 位 FNV-1a 哈希作为稳定 ID。
+     */
+    static long stableId(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= (b & 0xff);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return getItem(position).id;
+    }
+
+    /**
+     * 显示某一行的密码和备注。entry 只保留到该行被隐藏或条目被修改为止。
+     */
+    public void showSecret(String key, PasswordEntry entry) {
+        revealedSecrets.put(key, entry);
+        notifyRowChanged(key);
+    }
+
+    /**
+     * 隐藏某一行并丢弃其机密，条目被修改或删除后也应调用。
+     */
+    public void hideSecret(String key) {
+        if (revealedSecrets.remove(key) != null) {
+            notifyRowChanged(key);
+        }
+    }
+
+    private void notifyRowChanged(String key) {
+        List<Row> rows = getCurrentList();
+        for (int i = 0; i < rows.size(); i++) {
+            if (rows.get(i).key.equals(key)) {
+                notifyItemChanged(i);
+                return;
+            }
+        }
+    }
+
+    /**
+     * 多选模式切换或全选后只刷新复选框，不重新绑定整行。
+     */
+    public void refreshSelection() {
+        notifyItemRangeChanged(0, getItemCount(), PAYLOAD_SELECTION);
+    }
+
+    @NonNull
+    @Override
+    public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View cardView = LayoutInflater.from(parent.getContext()).inflate(R.layout.item_password_card, parent, false);
+        return new ViewHolder(cardView);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull ViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (payloads.contains(PAYLOAD_SELECTION)) {
+            bindSelection(holder, getItem(position));
+            return;
+        }
+        super.onBindViewHolder(holder, position, payloads);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
+        long t = VaultMetrics.start();
+        Row row = getItem(position);
+        holder.siteNameTextView.setText(row.metadata.getSiteName());
+        holder.usernameTextView.setText(row.metadata.getUsername());
+        bindSecret(holder, revealedSecrets.get(row.key));
+
+        holder.copyButton.setOnClickListener(v -> listener.onCopyPassword(row));
+        holder.togglePasswordButton.setOnClickListener(v -> {
+            if (revealedSecrets.containsKey(row.key)) {
+                hideSecret(row.key);
+            } else {
+                listener.onRevealPassword(row);
+            }
+        });
+        holder.editButton.setOnClickListener(v -> listener.onEditEntry(row));
+        holder.deleteButton.setOnClickListener(v -> listener.onDeleteEntry(row));
+        bindSelection(holder, row);
+        VaultMetrics.LIST_BIND.stop(t);
+    }
+
+    /**
+     * 备注属于机密部分，只在显示状态下出现。
+     */
+    private void bindSecret(ViewHolder holder, PasswordEntry secret) {
+        boolean revealed = secret != null;
+        holder.passwordTextView.setText(revealed ? secret.getPassword() : MASK);
+        if (revealed && !TextUtils.isEmpty(secret.getNote())) {
+            holder.noteTextView.setText(secret.getNote());
+            holder.noteContainer.setVisibility(View.VISIBLE);
+        } else {
+            holder.noteTextView.setText(null);
+            holder.noteContainer.setVisibility(View.GONE);
+        }
+        if (holder.togglePasswordButton instanceof ImageButton) {
+            ((ImageButton) holder.togglePasswordButton).setImageResource(
+                    revealed ? R.drawable.ic_visibility_off : R.drawable.ic_visibility);
+        }
+    }
+
+    private void bindSelection(ViewHolder holder, Row row) {
+        if (holder.selectCheckBox == null) return;
+        boolean multiSelect = listener.isMultiSelectMode();
+        holder.selectCheckBox.setVisibility(multiSelect ? View.VISIBLE : View.GONE);
+        holder.editButton.setVisibility(multiSelect ? View.GONE : View.VISIBLE);
+        holder.deleteButton.setVisibility(multiSelect ? View.GONE : View.VISIBLE);
+        // 先移除监听再设置状态，避免复用的 ViewHolder 把旧行的勾选写到新行
+        holder.selectCheckBox.setOnCheckedChangeListener(null);
+        holder.selectCheckBox.setChecked(listener.isSelected(row.key));
+        holder.selectCheckBox.setOnCheckedChangeListener((buttonView, isChecked) ->
+                listener.onSelectionChanged(row.key, isChecked));
+    }
+
+    static final class ViewHolder extends RecyclerView.ViewHolder {
+        final TextView siteNameTextView;
+        final TextView usernameTextView;
+        final TextView passwordTextView;
+        final LinearLayout noteContainer;
+        final TextView noteTextView;
+        final View copyButton;
+        final View togglePasswordButton;
+        final View editButton;
+        final View deleteButton;
+        final CheckBox selectCheckBox;
+
+        ViewHolder(View itemView) {
+            super(itemView);
+            siteNameTextView = itemView.findViewById(R.id.siteNameTextView);
+            usernameTextView = itemView.findViewById(R.id.usernameTextView);
+            passwordTextView = itemView.findViewById(R.id.passwordTextView);
+            noteContainer = itemView.findViewById(R.id.noteContainer);
+            noteTextView = itemView.findViewById(R.id.noteTextView);
+            copyButton = itemView.findViewById(R.id.copyButton);
+            togglePasswordButton = itemView.findViewById(R.id.togglePasswordButton);
+            editButton = itemView.findViewById(R.id.editButton);
+            deleteButton = itemView.findViewById(R.id.deleteButton);
+            selectCheckBox = itemView.findViewById(R.id.selectCheckBox);
+        }
+    }
+}
@@ -9,23 +9,58 @@ import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.SecretKeyFactory;
 import javax.crypto.spec.PBEKeySpec;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.security.SecureRandom;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 
 public class PasswordManager {
     private static final String PREFS_NAME = "VaultAIPasswords";
+    private static final String VAULT_FILE_NAME = "vault.dat";
     private static final String KEY_PREFIX = "password_";
-    private static final String ALGORITHM = "AES/GCM/NoPadding";
     private static final String KEY_ALGORITHM = "AES";
     private static final int SALT_LENGTH = 16;
     private static final int IV_LENGTH_GCM = 12;
     private static final int PBKDF2_ITERATIONS = 120000;
     private static final int KEY_LENGTH_BITS = 128;
+    private static final String AUTH_PREFS_NAME = "VaultAIAuth";
+    private static final String MASTER_SALT_KEY = "master_salt_b64";
+    private static final String WRAPPED_DEK_KEY = "wrapped_dek_b64";
+    // KEK 的校验值 HMAC-SHA256(KEK, KEY_CHECK_LABEL)，与 master_salt_b64 一起保存，用于验证主密码
+    private static final String KEY_CHECK_KEY = "key_check_b64";
+    private static final byte[] KEY_CHECK_LABEL = "VaultAI key check v1".getBytes(StandardCharsets.UTF_8);
+    // 旧版 LoginActivity 保存的主密码哈希，存在时由 LoginActivity 先用它验证
+    private static final String LEGACY_HASH_KEY = "master_password_hash";
+    // 早期 v4 记录以 Base64 文本存储，只读兼容，会被迁移为二进制格式
+    private static final String V4_PREFIX = "v4:";
+    // 二进制 v4 记录：[0x04][iv][密文+tag]，直接存入密码库文件
+    private static final byte V4_TAG = 0x04;
+    // 拆分存储的 v5 记录：[0x05][元数据密文长度:4][iv][元数据密文+tag][iv][机密密文+tag]，
+    // 元数据（网站名、用户名）和机密（密码、备注）各自用数据密钥加密，列表只需解密前者
+    private static final byte V5_TAG = 0x05;
+    private static final byte PART_METADATA = 0;
+    private static final byte PART_SECRET = 1;
+    private static final int V5_HEADER_BYTES = 1 + 4;
+    private static final int GCM_TAG_BYTES = 16;
+    private static final int READ_BUFFER_BYTES = 512;
     
     private SharedPreferences sharedPreferences;
-    private SecretKeySpec cachedMasterKey;
+    private VaultFile vaultFile;
+    // 应用内只有 VaultSession 持有的一个实例，解锁后的密钥由各界面共用
+    private final Object keyLock = new Object();
+    // 由主密码派生的 KEK，只用来包裹数据密钥
+    private volatile SecretKeySpec cachedMasterKey;
+    // 随机生成的数据密钥（DEK），v4 和 v5 条目都用它加密
+    private volatile SecretKeySpec cachedDataKey;
+    // 解锁时的主密码，只用于仍需逐盐派生的 v2、legacy 记录和导出文件，锁定时清零；只在持有 keyLock 时读写
+    private char[] sessionPassword;
+    // v2 记录和导出文件的逐盐派生密钥
+    private final DerivedKeyCache derivedKeyCache = new DerivedKeyCache(DerivedKeyCache.DEFAULT_CAPACITY);
     private final Context appContext;
     
     public PasswordManager(Context context) {
@@ -38,55 +73,657 @@ public class PasswordManager {
             if (this.sharedPreferences == null) {
                 throw new RuntimeException("Failed to initialize SharedPreferences");
             }
+            this.vaultFile = VaultFile.open(new File(appContext.getFilesDir(), VAULT_FILE_NAME));
+            migrateFromPreferences();
         } catch (Exception e) {
             throw new RuntimeException("Failed to create PasswordManager: " + e.getMessage(), e);
         }
     }
 
-    public boolean reEncryptAll(String oldMasterPassword, String newMasterPassword) {
+    /**
+     * 一次性把旧版 SharedPreferences 中的条目（legacy/v2/v3 密文）原样迁入密码库文件。
+     * 先提交到文件再从 prefs 中删除已迁移的 key，中途被杀时重复执行也是幂等的。其他 key 保留不动。
+     */
+    private void migrateFromPreferences() throws IOException {
+        Map<String, ?> all = sharedPreferences.getAll();
+        if (all.isEmpty()) return;
+        VaultFile.Editor editor = vaultFile.edit();
+        List<String> migrated = new ArrayList<>();
+        for (Map.Entry<String, ?> e : all.entrySet()) {
+            if (!e.getKey().startsWith(KEY_PREFIX)) continue;
+            Object value = e.getValue();
+            if (!(value instanceof String) || ((String) value).trim().isEmpty()) continue;
+            editor.put(e.getKey(), ((String) value).getBytes(StandardCharsets.UTF_8));
+            migrated.add(e.getKey());
+        }
+        if (migrated.isEmpty()) return;
+        editor.commit();
+        SharedPreferences.Editor prefs = sharedPreferences.edit();
+        for (String key : migrated) {
+            prefs.remove(key);
+        }
+        prefs.commit();
+    }
+
+    /**
+     * 修改主密码。条目由随机数据密钥加密，这里只需用新主密码重新包裹数据密钥，耗时与条目数量无关。
+     * 仍依赖旧主密码的 legacy/v2/v3 条目会先经 VaultMigrator 迁移到 v5，否则改密后将无法解密；
+     * 有条目迁移失败时不修改主密码。
+     */
+    public boolean changeMasterPassword(String oldMasterPassword, String newMasterPassword,
+                                        VaultMigrator.Listener listener) {
         try {
-            SharedPreferences.Editor editor = sharedPreferences.edit();
-            for (String key : sharedPreferences.getAll().keySet()) {
-                if (!key.startsWith(KEY_PREFIX)) continue;
-                String encrypted = sharedPreferences.getString(key, null);
-                if (encrypted == null || encrypted.trim().isEmpty()) continue;
+            if (!unlock(oldMasterPassword)) {
+                return false;
+            }
+            SecretKeySpec dataKey = requireDataKey();
+            VaultMigrator.Result result = migrateToDataKey(listener);
+            if (!result.failedKeys.isEmpty()) {
+                return false;
+            }
+
+            byte[] salt = new byte[SALT_LENGTH];
+            CryptoContext.random().nextBytes(salt);
+            char[] newPassword = newMasterPassword.toCharArray();
+            SecretKeySpec newMasterKey = deriveKey(newPassword, salt);
+            String wrapped = wrapKey(dataKey, newMasterKey);
+            // 盐和包裹后的数据密钥必须一起落盘
+            synchronized (keyLock) {
+                long t = VaultMetrics.start();
+                boolean ok = authPrefs().edit()
+                        .putString(MASTER_SALT_KEY, Base64.encodeToString(salt, Base64.DEFAULT))
+                        .putString(WRAPPED_DEK_KEY, wrapped)
+                        .putString(KEY_CHECK_KEY, keyCheck(newMasterKey))
+                        .commit();
+                VaultMetrics.PREFS_WRITE.stop(t);
+                if (ok) {
+                    cachedMasterKey = newMasterKey;
+                    setSessionPassword(newPassword);
+                    // 旧主密码派生的密钥不再有用
+                    derivedKeyCache.open();
+                } else {
+                    Arrays.fill(newPassword, '\0');
+                }
+                return ok;
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * 解锁密码库：用主密码派生一次 KEK，与 key_check_b64 做常数时间比较后解开数据密钥，
+     * 之后的加解密都直接使用缓存的密钥，不再运行 PBKDF2。
+     * 还没有校验值的密码库会通过解开数据密钥来验证并补写校验值；连数据密钥和旧版哈希都没有、但已有条目时，
+     * 先用这个密码解密一条现有的旧格式记录，解不开就拒绝，不为错误的密码写入校验值。
+     * 首次使用时生成盐、校验值和数据密钥。只有生成了数据密钥或校验值时才写 prefs。
+     * 主密码错误时返回 false，不缓存任何密钥。
+     */
+    public boolean unlock(String masterPassword) {
+        try {
+            synchronized (keyLock) {
+                SharedPreferences auth = authPrefs();
+                String saltB64 = auth.getString(MASTER_SALT_KEY, null);
+                byte[] salt = saltB64 != null
+                        ? Base64.decode(saltB64, Base64.DEFAULT)
+                        : CryptoContext.randomBytes(SALT_LENGTH);
+                char[] password = masterPassword.toCharArray();
+                SecretKeySpec masterKey;
+                String check;
+                String storedCheck;
+                SharedPreferences.Editor editor = auth.edit();
+                boolean changed = false;
+                String wrapped = auth.getString(WRAPPED_DEK_KEY, null);
+                SecretKeySpec dataKey;
                 try {
-                    String plain = decryptAny(encrypted, oldMasterPassword);
-                    String reenc = encryptV2(plain, newMasterPassword);
-                    editor.putString(key, reenc);
-                } catch (Exception e) {
-                    // 如果某条目解密失败，则跳过该条目
-                    e.printStackTrace();
+                    masterKey = deriveKey(password, salt);
+                    check = keyCheck(masterKey);
+                    storedCheck = auth.getString(KEY_CHECK_KEY, null);
+                    if (storedCheck != null && !java.security.MessageDigest.isEqual(
+                            Base64.decode(storedCheck, Base64.DEFAULT), Base64.decode(check, Base64.DEFAULT))) {
+                        return false;
+                    }
+                    if (wrapped != null) {
+                        dataKey = new SecretKeySpec(openGcm(Base64.decode(wrapped, Base64.DEFAULT), masterKey), KEY_ALGORITHM);
+                    } else {
+                        if (storedCheck == null && auth.getString(LEGACY_HASH_KEY, null) == null
+                                && vaultFile.size() > 0 && !verifyWithExistingRecord(password, masterKey)) {
+                            return false;
+                        }
+                        byte[] dek = CryptoContext.randomBytes(KEY_LENGTH_BITS / 8);
+                        dataKey = new SecretKeySpec(dek, KEY_ALGORITHM);
+                        editor.putString(WRAPPED_DEK_KEY, wrapKey(dataKey, masterKey));
+                        changed = true;
+                    }
+                } finally {
+                    Arrays.fill(password, '\0');
+                }
+                if (storedCheck == null) {
+                    editor.putString(MASTER_SALT_KEY, Base64.encodeToString(salt, Base64.DEFAULT))
+                            .putString(KEY_CHECK_KEY, check);
+                    changed = true;
+                }
+                if (changed) {
+                    long t = VaultMetrics.start();
+                    boolean committed = editor.commit();
+                    VaultMetrics.PREFS_WRITE.stop(t);
+                    if (!committed) {
+                        throw new IOException("Failed to store key check");
+                    }
                 }
+                cachedMasterKey = masterKey;
+                cachedDataKey = dataKey;
+                setSessionPassword(masterPassword.toCharArray());
+                derivedKeyCache.open();
+                return true;
             }
-            editor.apply();
-            return true;
+        } catch (javax.crypto.AEADBadTagException e) {
+            // 没有校验值的旧密码库：数据密钥解不开说明主密码错误
+            return false;
         } catch (Exception e) {
             e.printStackTrace();
             return false;
         }
     }
 
-    public String encryptData(String data, String key) throws Exception {
-        return encryptV3(data, key);
+    /**
+     * 预热解锁路径：加载认证信息（盐、校验值、包裹的数据密钥），在当前线程上初始化加密 provider。
+     * 密码库文件和索引已在构造时打开。在同一线程上随后调用 unlock 时只剩 PBKDF2 派生本身。
+     */
+    public void prewarm() {
+        try {
+            authPrefs().getString(MASTER_SALT_KEY, null);
+            CryptoContext.prewarm();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * 是否已保存主密码校验值。没有校验值但存在旧版 master_password_hash 的安装需要先用旧哈希验证。
+     */
+    public boolean hasKeyCheck() {
+        return authPrefs().getString(KEY_CHECK_KEY, null) != null;
+    }
+
+    public boolean isUnlocked() {
+        return cachedDataKey != null;
+    }
+
+    private static String keyCheck(SecretKeySpec masterKey) throws Exception {
+        javax.crypto.Mac mac = CryptoContext.hmac();
+        mac.init(new SecretKeySpec(masterKey.getEncoded(), CryptoContext.HMAC_ALGORITHM));
+        return Base64.encodeToString(mac.doFinal(KEY_CHECK_LABEL), Base64.NO_WRAP);
+    }
+
+    /**
+     * 用候选主密码解密第一条旧格式（legacy、v2、v3）记录并解码，成功才算验证通过。
+     * 没有这类记录时返回 false：v4/v5 记录需要数据密钥，缺了数据密钥无法验证，宁可拒绝解锁。
+     */
+    private boolean verifyWithExistingRecord(char[] password, SecretKeySpec masterKey) throws IOException {
+        for (String key : vaultFile.keys()) {
+            byte[] stored = vaultFile.get(key);
+            if (stored == null) continue;
+            int format = recordFormat(ByteBuffer.wrap(stored));
+            if (format != 1 && format != 2 && format != 3) continue;
+            String text = new String(stored, StandardCharsets.UTF_8);
+            byte[] plain = null;
+            try {
+                if (format == 3) {
+                    plain = decryptV3(text.substring(3), masterKey);
+                } else if (format == 2) {
+                    plain = decryptV2(text.substring(3), password);
+                } else {
+                    plain = decryptLegacy(text, legacyKey(password.clone()));
+                }
+                decodeEntry(plain);
+                return true;
+            } catch (Exception e) {
+                return false;
+            } finally {
+                if (plain != null) Arrays.fill(plain, (byte) 0);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 把所有尚未拆分存储的条目重新加密为 v5，支持从上次中断处继续。
+     */
+    public VaultMigrator.Result migrateToDataKey(VaultMigrator.Listener listener) throws Exception {
+        return new VaultMigrator(appContext, this, vaultFile).run(listener);
+    }
+
+    /**
+     * 是否存在需要迁移的条目（包括上次中断的迁移）。只检查密文前缀，不解密。
+     */
+    public boolean hasPendingMigration() throws IOException {
+        if (new VaultMigrator(appContext, this, vaultFile).hasCheckpoint()) return true;
+        for (String key : vaultFile.keys()) {
+            byte[] stored = vaultFile.get(key);
+            if (stored != null && needsMigration(stored)) return true;
+        }
+        return false;
+    }
+
+    boolean needsMigration(byte[] stored) {
+        return stored.length == 0 || stored[0] != V5_TAG;
+    }
+
+    /**
+     * 解密一条旧格式记录并重新加密为 v5，返回新的存储字节。
+     */
+    byte[] reencryptRecord(byte[] stored) throws Exception {
+        PasswordEntry entry = decodeStored(ByteBuffer.wrap(stored));
+        if (entry == null) {
+            throw new IllegalArgumentException("Empty password record");
+        }
+        return sealEntry(entry);
+    }
+
+    /**
+     * 二进制 v4 记录的长度：格式标记 + iv + 密文 + GCM tag。
+     */
+    public static int sealedLength(int plainLength) {
+        return 1 + IV_LENGTH_GCM + plainLength + GCM_TAG_BYTES;
+    }
+
+    /**
+     * 用数据密钥加密 plain 中剩余的字节，以 [0x04][iv][密文+tag] 写入 out 并返回写入的字节数。
+     * 直接使用 Cipher 的 ByteBuffer 重载，不产生中间数组；out 的剩余空间至少为 sealedLength(plain.remaining())。
+     */
+    public int encrypt(ByteBuffer plain, ByteBuffer out) throws Exception {
+        SecretKeySpec dataKey = requireDataKey();
+        long t = VaultMetrics.start();
+        byte[] iv = CryptoContext.ivBuffer();
+        CryptoContext.random().nextBytes(iv);
+        Cipher cipher = CryptoContext.gcm();
+        cipher.init(Cipher.ENCRYPT_MODE, dataKey, new GCMParameterSpec(128, iv));
+        int start = out.position();
+        out.put(V4_TAG).put(iv);
+        cipher.doFinal(plain, out);
+        VaultMetrics.ENCRYPT.stop(t);
+        return out.position() - start;
+    }
+
+    /**
+     * encrypt 的逆操作：解密 sealed 中剩余的一条 v4 记录，把明文写入 out 并返回明文长度。
+     * 堆内存 buffer 的 IV 通过偏移量直接引用，不复制。
+     */
+    public int decrypt(ByteBuffer sealed, ByteBuffer out) throws Exception {
+        long t = VaultMetrics.start();
+        int length = openV4(sealed, out);
+        VaultMetrics.DECRYPT.stop(t);
+        return length;
+    }
+
+    // decodeStored 自己计时，直接调用这里以免重复记录
+    private int openV4(ByteBuffer sealed, ByteBuffer out) throws Exception {
+        if (sealed.remaining() < sealedLength(0) || sealed.get(sealed.position()) != V4_TAG) {
+            throw new IllegalArgumentException("Not a v4 record");
+        }
+        SecretKeySpec dataKey = requireDataKey();
+        sealed.position(sealed.position() + 1);
+        GCMParameterSpec gcmSpec;
+        if (sealed.hasArray()) {
+            gcmSpec = new GCMParameterSpec(128, sealed.array(), sealed.arrayOffset() + sealed.position(), IV_LENGTH_GCM);
+            sealed.position(sealed.position() + IV_LENGTH_GCM);
+        } else {
+            byte[] iv = CryptoContext.ivBuffer();
+            sealed.get(iv);
+            gcmSpec = new GCMParameterSpec(128, iv);
+        }
+        Cipher cipher = CryptoContext.gcm();
+        cipher.init(Cipher.DECRYPT_MODE, dataKey, gcmSpec);
+        int start = out.position();
+        cipher.doFinal(sealed, out);
+        return out.position() - start;
+    }
+
+    private byte[] sealEntry(PasswordEntry entry) throws Exception {
+        SecretKeySpec dataKey = requireDataKey();
+        long t = VaultMetrics.start();
+        byte[] metadata = entry.metadataBytes();
+        byte[] secret = entry.secretBytes();
+        int metadataSealed = metadata.length + GCM_TAG_BYTES;
+        ByteBuffer out = ByteBuffer.allocate(V5_HEADER_BYTES + IV_LENGTH_GCM + metadataSealed
+                + IV_LENGTH_GCM + secret.length + GCM_TAG_BYTES);
+        out.put(V5_TAG).putInt(metadataSealed);
+        byte[] metadataIv = CryptoContext.randomBytes(IV_LENGTH_GCM);
+        try {
+            sealPart(dataKey, metadataIv, ByteBuffer.wrap(metadata), out, partAad(PART_METADATA, null, 0));
+            sealPart(dataKey, CryptoContext.randomBytes(IV_LENGTH_GCM), ByteBuffer.wrap(secret), out,
+                    partAad(PART_SECRET, metadataIv, 0));
+        } finally {
+            Arrays.fill(metadata, (byte) 0);
+            Arrays.fill(secret, (byte) 0);
+        }
+        VaultMetrics.ENCRYPT.stop(t);
+        return out.array();
     }
 
-    public String decryptData(String data, String key) throws Exception {
-        return decryptAny(data, key);
+    private void sealPart(SecretKeySpec key, byte[] iv, ByteBuffer plain, ByteBuffer out, byte[] aad) throws Exception {
+        Cipher cipher = CryptoContext.gcm();
+        cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(128, iv));
+        cipher.updateAAD(aad);
+        out.put(iv);
+        cipher.doFinal(plain, out);
     }
 
-    public String encryptForExportV2(String data, String key) throws Exception {
-        return encryptV2(data, key);
+    /**
+     * 解密 sealed（堆内存 buffer）中 offset 处的一个 [iv][密文+tag] 部分，明文写入 out。
+     */
+    private void openPart(SecretKeySpec key, ByteBuffer sealed, int offset, int sealedLength, ByteBuffer out,
+                          byte[] aad) throws Exception {
+        Cipher cipher = CryptoContext.gcm();
+        cipher.init(Cipher.DECRYPT_MODE, key,
+                new GCMParameterSpec(128, sealed.array(), sealed.arrayOffset() + offset, IV_LENGTH_GCM));
+        cipher.updateAAD(aad);
+        ByteBuffer part = sealed.duplicate();
+        part.limit(offset + IV_LENGTH_GCM + sealedLength);
+        part.position(offset + IV_LENGTH_GCM);
+        cipher.doFinal(part, out);
+    }
+
+    /**
+     * 每个部分的 AAD 为 [0x05][部分编号]，机密部分再加上元数据的 IV，
+     * 这样两部分都不能被单独替换成其他记录中的对应部分。
+     */
+    private static byte[] partAad(byte part, byte[] metadataIv, int ivOffset) {
+        byte[] aad = new byte[metadataIv != null ? 2 + IV_LENGTH_GCM : 2];
+        aad[0] = V5_TAG;
+        aad[1] = part;
+        if (metadataIv != null) {
+            System.arraycopy(metadataIv, ivOffset, aad, 2, IV_LENGTH_GCM);
+        }
+        return aad;
+    }
+
+    /**
+     * 校验 v5 记录的长度字段，返回元数据部分的密文长度（含 tag）。
+     */
+    private static int v5MetadataLength(ByteBuffer sealed) {
+        int length = sealed.remaining();
+        if (length < V5_HEADER_BYTES) {
+            throw new IllegalArgumentException("Truncated v5 record");
+        }
+        int metadataSealed = sealed.getInt(1);
+        if (metadataSealed < GCM_TAG_BYTES
+                || metadataSealed > length - V5_HEADER_BYTES - 2 * IV_LENGTH_GCM - GCM_TAG_BYTES) {
+            throw new IllegalArgumentException("Invalid v5 record");
+        }
+        return metadataSealed;
+    }
+
+    /**
+     * 把一个 key 的存储字节读入线程内复用的 buffer（已 flip），不存在时返回 null。
+     */
+    private ByteBuffer readStored(String key) throws IOException {
+        long t = VaultMetrics.start();
+        ByteBuffer sealed = CryptoContext.sealedBuffer(READ_BUFFER_BYTES);
+        int length = vaultFile.read(key, sealed);
+        // buffer 读取前是空的，长度超过容量说明没有复制；复制后 remaining() 已减少，不能用它判断
+        while (length > sealed.capacity()) {
+            sealed = CryptoContext.sealedBuffer(length);
+            length = vaultFile.read(key, sealed);
+        }
+        VaultMetrics.STORE_READ.stop(t);
+        if (length < 0) return null;
+        sealed.flip();
+        return sealed;
+    }
+
+    /**
+     * 读取并解密一个完整条目（包括密码和备注），不存在时返回 null。
+     * 记录经线程内复用的 buffer 从映射文件直接读取和解密，除解码出的字符串外不产生垃圾。
+     * 只在需要机密时调用，用完即丢弃；列表展示请使用 readMetadata。
+     */
+    public PasswordEntry readEntry(String key) throws Exception {
+        ByteBuffer sealed = readStored(key);
+        return sealed != null ? decodeStored(sealed) : null;
+    }
+
+    /**
+     * 只解密条目的网站名和用户名，不存在时返回 null。v5 记录不触碰机密部分；
+     * 尚未迁移的旧格式记录只能整体解密，密码和备注解出后立即丢弃。
+     */
+    public EntryMetadata readMetadata(String key) throws Exception {
+        ByteBuffer sealed = readStored(key);
+        if (sealed == null) return null;
+        if (sealed.remaining() > 0 && sealed.get(0) == V5_TAG) {
+            SecretKeySpec dataKey = requireDataKey();
+            long t = VaultMetrics.start();
+            int metadataSealed = v5MetadataLength(sealed);
+            ByteBuffer plain = CryptoContext.plainBuffer(metadataSealed);
+            EntryMetadata metadata;
+            try {
+                openPart(dataKey, sealed, V5_HEADER_BYTES, metadataSealed, plain, partAad(PART_METADATA, null, 0));
+                plain.flip();
+                metadata = EntryMetadata.fromBuffer(plain);
+            } catch (Exception e) {
+                VaultTrace.log(VaultTrace.DECRYPT_FAILURE, 0, 0, V5_TAG);
+                throw e;
+            } finally {
+                CryptoContext.wipe(plain);
+            }
+            VaultMetrics.DECRYPT_METADATA.stop(t);
+            return metadata;
+        }
+        PasswordEntry entry = decodeStored(sealed);
+        return entry != null ? new EntryMetadata(entry.getSiteName(), entry.getUsername()) : null;
+    }
+
+    /**
+     * 解码一条存储记录（堆内存 buffer，position 为 0），兼容 v5、二进制 v4 和旧版文本格式。
+     */
+    private PasswordEntry decodeStored(ByteBuffer sealed) throws Exception {
+        long t = VaultMetrics.start();
+        PasswordEntry entry;
+        try {
+            entry = decodeStoredRecord(sealed);
+        } catch (Exception e) {
+            VaultTrace.log(VaultTrace.DECRYPT_FAILURE, 0, 0, recordFormat(sealed));
+            throw e;
+        }
+        VaultMetrics.DECRYPT.stop(t);
+        return entry;
+    }
+
+    /**
+     * 存储记录的格式：5、4、3、2，旧版 CBC 文本为 1，空记录为 0。只看前几个字节，不分配对象。
+     */
+    private static int recordFormat(ByteBuffer sealed) {
+        if (sealed.remaining() == 0) return 0;
+        byte tag = sealed.get(0);
+        if (tag == V5_TAG || tag == V4_TAG) return tag;
+        if (sealed.remaining() >= 3 && tag == 'v' && sealed.get(2) == ':') {
+            byte version = sealed.get(1);
+            if (version == '3' || version == '2') return version - '0';
+        }
+        return 1;
+    }
+
+    private PasswordEntry decodeStoredRecord(ByteBuffer sealed) throws Exception {
+        int length = sealed.remaining();
+        byte tag = length > 0 ? sealed.get(0) : 0;
+        if (tag == V5_TAG) {
+            SecretKeySpec dataKey = requireDataKey();
+            int metadataSealed = v5MetadataLength(sealed);
+            ByteBuffer plain = CryptoContext.plainBuffer(length);
+            EntryMetadata metadata;
+            try {
+                openPart(dataKey, sealed, V5_HEADER_BYTES, metadataSealed, plain, partAad(PART_METADATA, null, 0));
+                plain.flip();
+                metadata = EntryMetadata.fromBuffer(plain);
+            } finally {
+                CryptoContext.wipe(plain);
+            }
+            int secretOffset = V5_HEADER_BYTES + IV_LENGTH_GCM + metadataSealed;
+            plain = CryptoContext.plainBuffer(length);
+            try {
+                openPart(dataKey, sealed, secretOffset, length - secretOffset - IV_LENGTH_GCM, plain,
+                        partAad(PART_SECRET, sealed.array(), sealed.arrayOffset() + V5_HEADER_BYTES));
+                plain.flip();
+                return PasswordEntry.fromParts(metadata, plain);
+            } finally {
+                CryptoContext.wipe(plain);
+            }
+        }
+        if (tag == V4_TAG) {
+            ByteBuffer plain = CryptoContext.plainBuffer(length);
+            try {
+                openV4(sealed, plain);
+                plain.flip();
+                return PasswordEntry.fromBuffer(plain);
+            } finally {
+                CryptoContext.wipe(plain);
+            }
+        }
+        String stored = new String(sealed.array(), sealed.arrayOffset(), length, StandardCharsets.UTF_8);
+        return stored.trim().isEmpty() ? null : decryptEntry(stored);
+    }
+
+    public String encryptData(String data) throws Exception {
+        return encryptV3(data.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public String decryptData(String data) throws Exception {
+        return decryptAny(data);
+    }
+
+    public String encryptForExportV2(String data) throws Exception {
+        return encryptV2(data.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 打开流式加密导出（见 VaultExport）。导出密钥由解锁时的主密码和新的随机盐派生。
+     */
+    public VaultExport.Writer openExportWriter(java.io.OutputStream out) throws Exception {
+        byte[] salt = CryptoContext.randomBytes(VaultExport.SALT_LENGTH);
+        return new VaultExport.Writer(out, deriveWithSessionPassword(salt), salt);
+    }
+
+    /**
+     * 读取流式导出的文件头并返回逐条解密的 Reader。
+     */
+    public VaultExport.Reader openExportReader(java.io.InputStream in) throws Exception {
+        byte[] header = VaultExport.readHeader(in);
+        return new VaultExport.Reader(in, header, deriveKeyCached(VaultExport.saltOf(header)));
+    }
+
+    /**
+     * 解密一条存储记录并解码为 PasswordEntry，兼容二进制和旧版文本两种明文格式。
+     */
+    public PasswordEntry decryptEntry(String stored) throws Exception {
+        byte[] plain = decryptAnyBytes(stored);
+        try {
+            return decodeEntry(plain);
+        } finally {
+            Arrays.fill(plain, (byte) 0);
+        }
+    }
+
+    static PasswordEntry decodeEntry(byte[] plain) {
+        if (PasswordEntry.isBinaryRecord(plain)) {
+            return PasswordEntry.fromBytes(plain);
+        }
+        PasswordEntry entry = PasswordEntry.fromDisplayText(new String(plain, StandardCharsets.UTF_8));
+        if (entry == null) {
+            throw new IllegalArgumentException("Unrecognized password record");
+        }
+        return entry;
+    }
+
+    /**
+     * 返回密码库中所有条目的 key（password_ 前缀）。
+     */
+    public List<String> getAllKeys() {
+        return vaultFile.keys();
+    }
+
+    /**
+     * 基于索引的存在性检查，O(log n)，不读取密文。
+     */
+    public boolean containsKey(String key) {
+        return vaultFile.contains(key);
+    }
+
+    /**
+     * 条目是否已存在，旧版只按网站名保存的键也算。与 upsertAll 判断冲突的规则相同。
+     */
+    public boolean containsEntry(String siteName, String username) {
+        return vaultFile.contains(buildKey(siteName, username)) || vaultFile.contains(KEY_PREFIX + siteName);
+    }
+
+    /**
+     * 返回网站名以 sitePrefix 开头的所有条目 key，按 key 排序。
+     */
+    public List<String> findKeysBySitePrefix(String sitePrefix) {
+        return vaultFile.keysWithPrefix(KEY_PREFIX + (sitePrefix != null ? sitePrefix : ""));
+    }
+
+    /**
+     * 返回某个网站下的所有条目 key。
+     */
+    public List<String> findKeysBySite(String siteName) {
+        return vaultFile.keysWithPrefix(KEY_PREFIX + (siteName != null ? siteName : "") + "|");
+    }
+
+    /**
+     * 按网站和用户名点查并只解密这一条，不存在时返回 null。也会查找只含网站名的旧版 key。
+     */
+    public PasswordEntry getEntry(String siteName, String username) throws Exception {
+        PasswordEntry entry = readEntry(buildKey(siteName, username));
+        if (entry == null) {
+            entry = readEntry(KEY_PREFIX + siteName);
+            if (entry != null && !entry.getUsername().equals(username)) {
+                entry = null;
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * 清除所有已保存的密码（包括尚未迁移的旧版 prefs 数据）。
+     */
+    public void clearAll() throws IOException {
+        vaultFile.clear();
+        lock();
+        sharedPreferences.edit().clear().commit();
+    }
+
+    /**
+     * 锁定：丢弃内存中的主密钥、数据密钥和所有派生密钥缓存，清零保存的主密码，之后需要重新输入主密码。
+     */
+    public void lock() {
+        synchronized (keyLock) {
+            cachedMasterKey = null;
+            cachedDataKey = null;
+            setSessionPassword(null);
+        }
+        derivedKeyCache.clear();
+        CryptoContext.discardBuffers();
+    }
+
+    public long getDerivedKeyCacheHits() {
+        return derivedKeyCache.hitCount();
+    }
+
+    public long getDerivedKeyCacheMisses() {
+        return derivedKeyCache.missCount();
     }
     
     /**
      * 保存密码条目
      */
-    public boolean savePassword(String masterPassword, PasswordEntry entry) {
+    public boolean savePassword(PasswordEntry entry) {
         try {
-            String encryptedData = encryptV3(entry.toString(), masterPassword);
             String key = buildKey(entry.getSiteName(), entry.getUsername());
-            sharedPreferences.edit().putString(key, encryptedData).apply();
+            VaultFile.Editor editor = vaultFile.edit().put(key, sealEntry(entry));
+            long t = VaultMetrics.start();
+            editor.commit();
+            VaultMetrics.STORE_WRITE.stop(t);
             return true;
         } catch (Exception e) {
             e.printStackTrace();
@@ -94,60 +731,123 @@ public class PasswordManager {
         }
     }
 
-    public boolean savePasswordsBatch(String masterPassword, List<PasswordEntry> entries) {
+    public boolean savePasswordsBatch(List<PasswordEntry> entries) {
         try {
-            SharedPreferences.Editor editor = sharedPreferences.edit();
+            VaultFile.Editor editor = vaultFile.edit();
             for (PasswordEntry entry : entries) {
                 if (entry == null) continue;
-                String encryptedData = encryptV3(entry.toString(), masterPassword);
                 String key = buildKey(entry.getSiteName(), entry.getUsername());
-                editor.putString(key, encryptedData);
+                editor.put(key, sealEntry(entry));
             }
-            editor.apply();
+            long t = VaultMetrics.start();
+            editor.commit();
+            VaultMetrics.STORE_WRITE.stop(t);
             return true;
         } catch (Exception e) {
             e.printStackTrace();
             return false;
         }
     }
-    
+
     /**
-     * 获取所有保存的密码
+     * 已存在同一网站和用户名的条目时的处理方式。
      */
-    public List<String> getAllPasswords(String masterPassword) {
-        List<String> passwords = new ArrayList<>();
-        
-        for (String key : sharedPreferences.getAll().keySet()) {
-            if (key.startsWith(KEY_PREFIX)) {
-                String encryptedData = sharedPreferences.getString(key, "");
-                // 检查是否为空字符串
-                if (encryptedData == null || encryptedData.trim().isEmpty()) {
+    public enum ConflictPolicy {
+        SKIP_EXISTING,
+        OVERWRITE
+    }
+
+    public static final class UpsertResult {
+        public final int inserted;
+        public final int overwritten;
+        public final int skipped;
+        public final int invalid;
+
+        UpsertResult(int inserted, int overwritten, int skipped, int invalid) {
+            this.inserted = inserted;
+            this.overwritten = overwritten;
+            this.skipped = skipped;
+            this.invalid = invalid;
+        }
+    }
+
+    /**
+     * 批量写入条目：存在性检查、旧版 key 的删除和写入在同一次提交中完成，要么全部生效要么全部不生效。
+     * 网站名、用户名或密码为空的条目计为 invalid；同一批中重复的条目按出现顺序处理，后者视为已存在。
+     */
+    public UpsertResult upsertAll(Iterable<PasswordEntry> entries, ConflictPolicy policy)
+            throws Exception {
+        int inserted = 0;
+        int overwritten = 0;
+        int skipped = 0;
+        int invalid = 0;
+        java.util.Set<String> seen = new java.util.HashSet<>();
+        // 持有文件锁，保证检查到提交之间不会有其他写入
+        synchronized (vaultFile) {
+            VaultFile.Editor editor = vaultFile.edit();
+            for (PasswordEntry entry : entries) {
+                if (entry == null || entry.getSiteName().isEmpty() || entry.getUsername().isEmpty()
+                        || entry.getPassword().isEmpty()) {
+                    invalid++;
                     continue;
                 }
-                try {
-                    String decryptedData = decryptAny(encryptedData, masterPassword);
-                    passwords.add(decryptedData);
-                } catch (Exception e) {
-                    // 如果解密失败，可能是主密码错误
-                    passwords.add("【解密失败】网站: " + key.replace(KEY_PREFIX, ""));
+                String key = buildKey(entry.getSiteName(), entry.getUsername());
+                String legacyKey = KEY_PREFIX + entry.getSiteName();
+                boolean exists = seen.contains(key) || containsEntry(entry.getSiteName(), entry.getUsername());
+                if (exists && policy == ConflictPolicy.SKIP_EXISTING) {
+                    skipped++;
+                    continue;
+                }
+                if (vaultFile.contains(legacyKey)) {
+                    editor.remove(legacyKey);
+                }
+                editor.put(key, sealEntry(entry));
+                seen.add(key);
+                if (exists) {
+                    overwritten++;
+                } else {
+                    inserted++;
                 }
             }
+            long t = VaultMetrics.start();
+            editor.commit();
+            VaultMetrics.STORE_WRITE.stop(t);
+        }
+        return new UpsertResult(inserted, overwritten, skipped, invalid);
+    }
+    
+    /**
+     * 获取所有保存的密码。旧格式条目的迁移由 VaultMigrator 负责，这里只读不写。
+     */
+    public List<PasswordEntry> getAllPasswords() {
+        List<PasswordEntry> passwords = new ArrayList<>();
+        
+        for (String key : vaultFile.keys()) {
+            try {
+                PasswordEntry entry = readEntry(key);
+                if (entry != null) {
+                    passwords.add(entry);
+                }
+            } catch (Exception e) {
+                // 如果解密失败，可能是主密码错误
+                e.printStackTrace();
+            }
         }
         
         return passwords;
     }
 
-    private String encryptV2(String data, String password) throws Exception {
+    private String encryptV2(byte[] data) throws Exception {
         byte[] salt = new byte[SALT_LENGTH];
         byte[] iv = new byte[IV_LENGTH_GCM];
-        SecureRandom random = new SecureRandom();
+        SecureRandom random = CryptoContext.random();
         random.nextBytes(salt);
         random.nextBytes(iv);
-        SecretKeySpec secretKey = deriveKey(password, salt);
-        Cipher cipher = Cipher.getInstance(ALGORITHM);
+        SecretKeySpec secretKey = deriveWithSessionPassword(salt);
+        Cipher cipher = CryptoContext.gcm();
         GCMParameterSpec gcmSpec = new GCMParameterSpec(128, iv);
         cipher.init(Cipher.ENCRYPT_MODE, secretKey, gcmSpec);
-        byte[] encryptedData = cipher.doFinal(data.getBytes(StandardCharsets.UTF_8));
+        byte[] encryptedData = cipher.doFinal(data);
         byte[] combined = new byte[salt.length + iv.length + encryptedData.length];
         System.arraycopy(salt, 0, combined, 0, salt.length);
         System.arraycopy(iv, 0, combined, salt.length, iv.length);
@@ -155,21 +855,51 @@ public class PasswordManager {
         return "v2:" + Base64.encodeToString(combined, Base64.DEFAULT);
     }
 
-    private String encryptV3(String data, String password) throws Exception {
-        SecretKeySpec masterKey = getOrCreateMasterKey(password);
+    private String encryptV3(byte[] data) throws Exception {
+        SecretKeySpec masterKey = requireMasterKey();
         byte[] iv = new byte[IV_LENGTH_GCM];
-        new SecureRandom().nextBytes(iv);
-        Cipher cipher = Cipher.getInstance(ALGORITHM);
+        CryptoContext.random().nextBytes(iv);
+        Cipher cipher = CryptoContext.gcm();
         GCMParameterSpec gcmSpec = new GCMParameterSpec(128, iv);
         cipher.init(Cipher.ENCRYPT_MODE, masterKey, gcmSpec);
-        byte[] encryptedData = cipher.doFinal(data.getBytes(StandardCharsets.UTF_8));
+        byte[] encryptedData = cipher.doFinal(data);
         byte[] combined = new byte[iv.length + encryptedData.length];
         System.arraycopy(iv, 0, combined, 0, iv.length);
         System.arraycopy(encryptedData, 0, combined, iv.length, encryptedData.length);
         return "v3:" + Base64.encodeToString(combined, Base64.DEFAULT);
     }
 
-    private String decryptV2(String encryptedData, String password) throws Exception {
+    private byte[] decryptV4(String encryptedData) throws Exception {
+        return openGcm(Base64.decode(encryptedData, Base64.DEFAULT), requireDataKey());
+    }
+
+    /**
+     * AES-GCM 加密，输出 [iv][密文+tag]。
+     */
+    private static byte[] sealGcm(byte[] data, SecretKeySpec key) throws Exception {
+        byte[] iv = new byte[IV_LENGTH_GCM];
+        CryptoContext.random().nextBytes(iv);
+        Cipher cipher = CryptoContext.gcm();
+        cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(128, iv));
+        byte[] encryptedData = cipher.doFinal(data);
+        byte[] combined = new byte[iv.length + encryptedData.length];
+        System.arraycopy(iv, 0, combined, 0, iv.length);
+        System.arraycopy(encryptedData, 0, combined, iv.length, encryptedData.length);
+        return combined;
+    }
+
+    private static byte[] openGcm(byte[] combined, SecretKeySpec key) throws Exception {
+        Cipher cipher = CryptoContext.gcm();
+        cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(128, combined, 0, IV_LENGTH_GCM));
+        return cipher.doFinal(combined, IV_LENGTH_GCM, combined.length - IV_LENGTH_GCM);
+    }
+
+    private byte[] decryptV2(String encryptedData) throws Exception {
+        return decryptV2(encryptedData, null);
+    }
+
+    // password 为 null 时用解锁时保存的主密码，按盐缓存派生的密钥
+    private byte[] decryptV2(String encryptedData, char[] password) throws Exception {
         byte[] combined = Base64.decode(encryptedData, Base64.DEFAULT);
         byte[] salt = new byte[SALT_LENGTH];
         byte[] iv = new byte[IV_LENGTH_GCM];
@@ -177,17 +907,19 @@ public class PasswordManager {
         System.arraycopy(combined, salt.length, iv, 0, iv.length);
         byte[] enc = new byte[combined.length - salt.length - iv.length];
         System.arraycopy(combined, salt.length + iv.length, enc, 0, enc.length);
-        SecretKeySpec secretKey = deriveKey(password, salt);
-        Cipher cipher = Cipher.getInstance(ALGORITHM);
+        SecretKeySpec secretKey = password != null ? deriveKey(password, salt) : deriveKeyCached(salt);
+        Cipher cipher = CryptoContext.gcm();
         GCMParameterSpec gcmSpec = new GCMParameterSpec(128, iv);
         cipher.init(Cipher.DECRYPT_MODE, secretKey, gcmSpec);
-        byte[] decryptedData = cipher.doFinal(enc);
-        return new String(decryptedData, StandardCharsets.UTF_8);
+        return cipher.doFinal(enc);
+    }
+
+    private byte[] decryptLegacy(String encryptedData) throws Exception {
+        return decryptLegacy(encryptedData, legacyKey(requirePassword()));
     }
 
-    private String decryptLegacy(String encryptedData, String password) throws Exception {
-        SecretKeySpec secretKey = generateKey(password);
-        Cipher cipher = Cipher.getInstance("AES/CBC/PKCS7Padding");
+    private static byte[] decryptLegacy(String encryptedData, SecretKeySpec secretKey) throws Exception {
+        Cipher cipher = CryptoContext.cbc();
         byte[] combined = Base64.decode(encryptedData, Base64.DEFAULT);
         byte[] iv = new byte[16];
         System.arraycopy(combined, 0, iv, 0, iv.length);
@@ -195,66 +927,125 @@ public class PasswordManager {
         byte[] encryptedBytes = new byte[combined.length - iv.length];
         System.arraycopy(combined, iv.length, encryptedBytes, 0, encryptedBytes.length);
         cipher.init(Cipher.DECRYPT_MODE, secretKey, ivSpec);
-        byte[] decryptedData = cipher.doFinal(encryptedBytes);
-        return new String(decryptedData, StandardCharsets.UTF_8);
+        return cipher.doFinal(encryptedBytes);
     }
 
-    private String decryptAny(String stored, String password) throws Exception {
+    private String decryptAny(String stored) throws Exception {
+        return new String(decryptAnyBytes(stored), StandardCharsets.UTF_8);
+    }
+
+    private byte[] decryptAnyBytes(String stored) throws Exception {
         if (stored != null) {
-            if (stored.startsWith("v3:")) {
-                return decryptV3(stored.substring(3), password);
+            if (stored.startsWith(V4_PREFIX)) {
+                return decryptV4(stored.substring(3));
+            } else if (stored.startsWith("v3:")) {
+                return decryptV3(stored.substring(3), requireMasterKey());
             } else if (stored.startsWith("v2:")) {
-                return decryptV2(stored.substring(3), password);
+                return decryptV2(stored.substring(3));
             }
         }
-        return decryptLegacy(stored, password);
+        return decryptLegacy(stored);
     }
 
-    private String decryptV3(String encryptedData, String password) throws Exception {
-        SecretKeySpec masterKey = getOrCreateMasterKey(password);
+    private static byte[] decryptV3(String encryptedData, SecretKeySpec masterKey) throws Exception {
         byte[] combined = Base64.decode(encryptedData, Base64.DEFAULT);
         byte[] iv = new byte[IV_LENGTH_GCM];
         System.arraycopy(combined, 0, iv, 0, iv.length);
         byte[] enc = new byte[combined.length - iv.length];
         System.arraycopy(combined, iv.length, enc, 0, enc.length);
-        Cipher cipher = Cipher.getInstance(ALGORITHM);
+        Cipher cipher = CryptoContext.gcm();
         GCMParameterSpec gcmSpec = new GCMParameterSpec(128, iv);
         cipher.init(Cipher.DECRYPT_MODE, masterKey, gcmSpec);
-        byte[] decryptedData = cipher.doFinal(enc);
-        return new String(decryptedData, StandardCharsets.UTF_8);
+        return cipher.doFinal(enc);
     }
 
-    private SecretKeySpec getOrCreateMasterKey(String password) throws Exception {
-        if (cachedMasterKey != null) return cachedMasterKey;
-        SharedPreferences auth = appContext.getSharedPreferences("VaultAIAuth", Context.MODE_PRIVATE);
-        String b64 = auth.getString("master_salt_b64", null);
-        byte[] salt;
-        if (b64 == null) {
-            salt = new byte[SALT_LENGTH];
-            new SecureRandom().nextBytes(salt);
-            auth.edit().putString("master_salt_b64", Base64.encodeToString(salt, Base64.DEFAULT)).apply();
-        } else {
-            salt = Base64.decode(b64, Base64.DEFAULT);
+    /**
+     * 解锁时缓存的 KEK。只有 unlock() 派生或生成密钥，这里不会重新派生：锁定后仍持有主密码的后台任务
+     * （迁移、导出等）不能借此重新缓存密钥。
+     */
+    private SecretKeySpec requireMasterKey() {
+        SecretKeySpec key = cachedMasterKey;
+        if (key == null) throw new IllegalStateException("Vault is locked");
+        return key;
+    }
+
+    /**
+     * 解锁时解开的数据密钥。解锁时只做一次 PBKDF2 派生 KEK，之后所有条目的加解密都只用 DEK。
+     */
+    private SecretKeySpec requireDataKey() {
+        SecretKeySpec key = cachedDataKey;
+        if (key == null) throw new IllegalStateException("Vault is locked");
+        return key;
+    }
+
+    private static String wrapKey(SecretKeySpec dataKey, SecretKeySpec masterKey) throws Exception {
+        return Base64.encodeToString(sealGcm(dataKey.getEncoded(), masterKey), Base64.DEFAULT);
+    }
+
+    private SharedPreferences authPrefs() {
+        return appContext.getSharedPreferences(AUTH_PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * 用解锁时的主密码派生 salt 对应的密钥，同一次解锁内按盐缓存。
+     */
+    private SecretKeySpec deriveKeyCached(byte[] salt) throws Exception {
+        SecretKeySpec key = derivedKeyCache.get(salt);
+        if (key == null) {
+            key = deriveWithSessionPassword(salt);
+            derivedKeyCache.put(salt, key);
+        }
+        return key;
+    }
+
+    private SecretKeySpec deriveKey(char[] password, byte[] salt) throws Exception {
+        long t = VaultMetrics.start();
+        PBEKeySpec spec = new PBEKeySpec(password, salt, PBKDF2_ITERATIONS, KEY_LENGTH_BITS);
+        try {
+            SecretKeyFactory skf = CryptoContext.pbkdf2();
+            byte[] keyBytes = skf.generateSecret(spec).getEncoded();
+            VaultMetrics.DERIVE.stop(t);
+            return new SecretKeySpec(keyBytes, KEY_ALGORITHM);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    private SecretKeySpec deriveWithSessionPassword(byte[] salt) throws Exception {
+        char[] password = requirePassword();
+        try {
+            return deriveKey(password, salt);
+        } finally {
+            Arrays.fill(password, '\0');
+        }
+    }
+
+    /**
+     * 返回解锁时保存的主密码的副本，调用方用完后清零；锁定后抛出 IllegalStateException。只有逐盐派生密钥的旧格式和导出文件需要它。
+     */
+    private char[] requirePassword() {
+        synchronized (keyLock) {
+            if (sessionPassword == null) throw new IllegalStateException("Vault is locked");
+            return sessionPassword.clone();
         }
-        cachedMasterKey = deriveKey(password, salt);
-        return cachedMasterKey;
     }
 
-    private SecretKeySpec deriveKey(String password, byte[] salt) throws Exception {
-        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, PBKDF2_ITERATIONS, KEY_LENGTH_BITS);
-        SecretKeyFactory skf = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256");
-        byte[] keyBytes = skf.generateSecret(spec).getEncoded();
-        return new SecretKeySpec(keyBytes, KEY_ALGORITHM);
+    // 调用方持有 keyLock
+    private void setSessionPassword(char[] password) {
+        if (sessionPassword != null) {
+            Arrays.fill(sessionPassword, '\0');
+        }
+        sessionPassword = password;
     }
     
     /**
      * 删除指定网站的密码
      */
-    public boolean deletePassword(String masterPassword, String siteName) {
+    public boolean deletePassword(String siteName) {
         try {
             String key = KEY_PREFIX + siteName;
-            if (sharedPreferences.contains(key)) {
-                sharedPreferences.edit().remove(key).apply();
+            if (vaultFile.contains(key)) {
+                vaultFile.edit().remove(key).commit();
                 return true;
             }
             return false;
@@ -268,18 +1059,20 @@ public class PasswordManager {
         try {
             String newKey = buildKey(siteName, username);
             String legacyKey = KEY_PREFIX + siteName;
-            SharedPreferences.Editor editor = sharedPreferences.edit();
+            VaultFile.Editor editor = vaultFile.edit();
             boolean removed = false;
-            if (sharedPreferences.contains(newKey)) {
+            if (vaultFile.contains(newKey)) {
                 editor.remove(newKey);
                 removed = true;
             }
-            if (sharedPreferences.contains(legacyKey)) {
+            if (vaultFile.contains(legacyKey)) {
                 editor.remove(legacyKey);
                 removed = true;
             }
             if (removed) {
-                editor.apply();
+                long t = VaultMetrics.start();
+                editor.commit();
+                VaultMetrics.STORE_WRITE.stop(t);
             }
             return removed;
         } catch (Exception e) {
@@ -288,6 +1081,41 @@ public class PasswordManager {
         }
     }
 
+    /**
+     * 批量删除（含旧版只按网站名保存的键），所有删除在一次提交中完成，返回实际删除的条目数。
+     */
+    public int deletePasswords(List<EntryMetadata> entries) {
+        try {
+            VaultFile.Editor editor = vaultFile.edit();
+            int removed = 0;
+            for (EntryMetadata entry : entries) {
+                String newKey = buildKey(entry.getSiteName(), entry.getUsername());
+                String legacyKey = KEY_PREFIX + entry.getSiteName();
+                boolean found = false;
+                if (vaultFile.contains(newKey)) {
+                    editor.remove(newKey);
+                    found = true;
+                }
+                if (vaultFile.contains(legacyKey)) {
+                    editor.remove(legacyKey);
+                    found = true;
+                }
+                if (found) {
+                    removed++;
+                }
+            }
+            if (removed > 0) {
+                long t = VaultMetrics.start();
+                editor.commit();
+                VaultMetrics.STORE_WRITE.stop(t);
+            }
+            return removed;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return 0;
+        }
+    }
+
     public String buildKey(String siteName, String username) {
         String s = siteName != null ? siteName : "";
         String u = username != null ? username : "";
@@ -299,11 +1127,11 @@ public class PasswordManager {
      */
     private String encrypt(String data, String key) throws Exception {
         SecretKeySpec secretKey = generateKey(key);
-        Cipher cipher = Cipher.getInstance("AES/CBC/PKCS7Padding");
+        Cipher cipher = CryptoContext.cbc();
         
         // 生成随机IV
         byte[] iv = new byte[16];
-        SecureRandom random = new SecureRandom();
+        SecureRandom random = CryptoContext.random();
         random.nextBytes(iv);
         IvParameterSpec ivSpec = new IvParameterSpec(iv);
         
@@ -323,7 +1151,7 @@ public class PasswordManager {
      */
     private String decrypt(String encryptedData, String key) throws Exception {
         SecretKeySpec secretKey = generateKey(key);
-        Cipher cipher = Cipher.getInstance("AES/CBC/PKCS7Padding");
+        Cipher cipher = CryptoContext.cbc();
         
         byte[] combined = Base64.decode(encryptedData, Base64.DEFAULT);
         
@@ -345,9 +1173,19 @@ public class PasswordManager {
      * 生成AES密钥
      */
     private SecretKeySpec generateKey(String password) throws Exception {
+        return legacyKey(password.toCharArray());
+    }
+
+    private SecretKeySpec legacyKey(char[] password) {
         // 简单的密钥生成 - 实际应用中应该使用更安全的密钥派生函数
         byte[] key = new byte[16]; // AES-128需要16字节密钥
-        byte[] passwordBytes = password.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer encoded = StandardCharsets.UTF_8.encode(java.nio.CharBuffer.wrap(password));
+        byte[] passwordBytes = new byte[encoded.remaining()];
+        encoded.get(passwordBytes);
+        Arrays.fill(password, '\0');
+        if (encoded.hasArray()) {
+            Arrays.fill(encoded.array(), (byte) 0);
+        }
         
         // 将密码字节复制到密钥数组
         for (int i = 0; i < key.length && i < passwordBytes.length; i++) {
@@ -358,6 +1196,7 @@ public class PasswordManager {
         for (int i = passwordBytes.length; i < key.length; i++) {
             key[i] = 0;
         }
+        Arrays.fill(passwordBytes, (byte) 0);
         
         return new SecretKeySpec(key, KEY_ALGORITHM);
     }
@@ -0,0 +1,411 @@
+package com.vaultai.app;
+
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 解锁后在内存中构建的搜索索引，覆盖网站名和用户名。备注属于机密部分，不进入索引。
+ *
+ * 索引按单字和双字（bigram）建立倒排表，对中文和英文都适用。倒排表的 key
+ * 是使用本次会话随机密钥计算的 64 位哈希，不保存明文片段；但每个条目仍保留转为小写的
+ * 网站名和用户名，用于校验候选和打分。这些明文与列表模型中的相同，随会话锁定时的 clear() 释放。
+ * 查询时先用倒排表求交集得到候选，再逐个校验并打分排序；可通过 Cancellation
+ * 在输入新字符后放弃过期查询。
+ *
+ * 修改通过 Editor 批量提交，每次提交发布一个不可变快照，search() 只读取当时的快照，不加锁。
+ * 主线程上的修改因此不会等待搜索线程上正在进行的查询。快照之间共享数据：条目数组只追加，
+ * 倒排表分成若干段，每次提交只为新条目建一个小段，相邻的段按大小合并，段数保持在 O(log n)。
+ * 删除不修改旧段，只在条目上记下删除时的版本号，旧快照仍把它当作存在。
+ *
+ * 大小写转换使用 Locale.ROOT，避免土耳其语等区域设置下 "I" 转为 "ı" 导致查不到条目。
+ */
+public class SearchIndex {
+    private static final int TOMBSTONE_REBUILD_MIN = 1024;
+    private static final int CANCEL_CHECK_INTERVAL = 256;
+    private static final int MAX_SCORE = 100;
+
+    public interface Cancellation {
+        boolean isCancelled();
+    }
+
+    private static final class Doc {
+        final String key;
+        final String site;
+        final String username;
+        // 被删除或替换时所在的版本，之前的快照仍把它当作存在
+        volatile int removedIn = Integer.MAX_VALUE;
+
+        Doc(String key, String site, String username) {
+            this.key = key;
+            this.site = site;
+            this.username = username;
+        }
+    }
+
+    /**
+     * 条目 id 在 [from, to) 内的倒排表，创建后不再修改。
+     */
+    private static final class Segment {
+        final int from;
+        final int to;
+        final Map<Long, int[]> postings;
+
+        Segment(int from, int to, Map<Long, int[]> postings) {
+            this.from = from;
+            this.to = to;
+            this.postings = postings;
+        }
+    }
+
+    /**
+     * 某一版本的索引。docs 中 id 小于 docCount 的元素不再改变；排序名次在第一次查询时计算。
+     */
+    private static final class Snapshot {
+        final int version;
+        final Doc[] docs;
+        final int docCount;
+        final int liveCount;
+        final Segment[] segments;
+        // 按 (网站名, key) 排好的名次，惰性计算，只在持有本快照的锁时写入
+        private int[] rankOfDoc;
+        private int[] docAtRank;
+
+        Snapshot(int version, Doc[] docs, int docCount, int liveCount, Segment[] segments) {
+            this.version = version;
+            this.docs = docs;
+            this.docCount = docCount;
+            this.liveCount = liveCount;
+            this.segments = segments;
+        }
+
+        boolean isLive(int docId) {
+            return docs[docId].removedIn > version;
+        }
+
+        synchronized void ensureOrder() {
+            if (docAtRank != null) return;
+            Integer[] live = new Integer[liveCount];
+            int n = 0;
+            for (int i = 0; i < docCount; i++) if (isLive(i)) live[n++] = i;
+            Arrays.sort(live, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer a, Integer b) {
+                    Doc x = docs[a], y = docs[b];
+                    int c = x.site.compareTo(y.site);
+                    return c != 0 ? c : x.key.compareTo(y.key);
+                }
+            });
+            int[] ranks = new int[docCount];
+            int[] order = new int[live.length];
+            for (int rank = 0; rank < live.length; rank++) {
+                order[rank] = live[rank];
+                ranks[live[rank]] = rank;
+            }
+            rankOfDoc = ranks;
+            docAtRank = order;
+        }
+    }
+
+    /**
+     * 一批修改，commit() 时一起发布。只在调用线程上使用。
+     */
+    public class Editor {
+        private final List<String[]> ops = new ArrayList<>();
+
+        public Editor put(String key, String siteName, String username) {
+            ops.add(new String[]{key, siteName, username});
+            return this;
+        }
+
+        public Editor remove(String key) {
+            ops.add(new String[]{key});
+            return this;
+        }
+
+        public void commit() {
+            SearchIndex.this.commit(ops);
+            ops.clear();
+        }
+    }
+
+    private final long hashKey0;
+    private final long hashKey1;
+    private volatile Snapshot snapshot;
+
+    // 以下只在持有 writeLock 时访问，search() 从不获取这个锁
+    private final Object writeLock = new Object();
+    private final Map<String, Doc> live = new HashMap<>();
+    private Doc[] docs = new Doc[16];
+    private int docCount;
+    private final List<Segment> segments = new ArrayList<>();
+    private int version;
+    private int tombstones;
+
+    public SearchIndex() {
+        SecureRandom random = new SecureRandom();
+        hashKey0 = random.nextLong();
+        hashKey1 = random.nextLong();
+        snapshot = new Snapshot(0, docs, 0, 0, new Segment[0]);
+    }
+
+    public Editor edit() {
+        return new Editor();
+    }
+
+    /**
+     * 添加或替换一个条目。
+     */
+    public void put(String key, String siteName, String username) {
+        edit().put(key, siteName, username).commit();
+    }
+
+    public void remove(String key) {
+        edit().remove(key).commit();
+    }
+
+    public void clear() {
+        synchronized (writeLock) {
+            live.clear();
+            docs = new Doc[16];
+            docCount = 0;
+            segments.clear();
+            tombstones = 0;
+            snapshot = new Snapshot(++version, docs, 0, 0, new Segment[0]);
+        }
+    }
+
+    public int size() {
+        return snapshot.liveCount;
+    }
+
+    private void commit(List<String[]> ops) {
+        if (ops.isEmpty()) return;
+        synchronized (writeLock) {
+            int v = version + 1;
+            int from = docCount;
+            for (String[] op : ops) {
+                Doc old = live.remove(op[0]);
+                if (old != null) {
+                    old.removedIn = v;
+                    tombstones++;
+                }
+                if (op.length > 1) {
+                    Doc doc = new Doc(op[0], lower(op[1]), lower(op[2]));
+                    if (docCount == docs.length) docs = Arrays.copyOf(docs, docCount * 2);
+                    docs[docCount++] = doc;
+                    live.put(op[0], doc);
+                }
+            }
+            version = v;
+            if (tombstones >= TOMBSTONE_REBUILD_MIN && tombstones > live.size()) {
+                rebuild();
+            } else if (docCount > from) {
+                segments.add(buildSegment(from, docCount));
+                // 像二进制计数器一样合并：新段不小于前一段的一半时合并，段数为 O(log n)
+                while (segments.size() >= 2) {
+                    Segment last = segments.get(segments.size() - 1);
+                    Segment prev = segments.get(segments.size() - 2);
+                    if ((last.to - last.from) * 2 < prev.to - prev.from) break;
+                    segments.remove(segments.size() - 1);
+                    segments.set(segments.size() - 1, merge(prev, last));
+                }
+            }
+            snapshot = new Snapshot(v, docs, docCount, live.size(), segments.toArray(new Segment[0]));
+        }
+    }
+
+    /**
+     * 删除的条目过多时只保留存在的条目，重建为一个段。旧快照仍持有原来的数组。
+     */
+    private void rebuild() {
+        Doc[] kept = new Doc[Math.max(16, live.size() * 2)];
+        int n = 0;
+        for (int i = 0; i < docCount; i++) {
+            if (docs[i].removedIn == Integer.MAX_VALUE) kept[n++] = docs[i];
+        }
+        docs = kept;
+        docCount = n;
+        tombstones = 0;
+        segments.clear();
+        if (n > 0) segments.add(buildSegment(0, n));
+    }
+
+    private Segment buildSegment(int from, int to) {
+        Map<Long, int[]> postings = new HashMap<>();
+        Map<Long, Integer> sizes = new HashMap<>();
+        Set<Long> grams = new HashSet<>();
+        for (int id = from; id < to; id++) {
+            Doc doc = docs[id];
+            if (doc.removedIn != Integer.MAX_VALUE) continue;
+            grams.clear();
+            collectGrams(doc.site, grams);
+            collectGrams(doc.username, grams);
+            for (Long gram : grams) {
+                int[] list = postings.get(gram);
+                Integer size = sizes.get(gram);
+                int n = size != null ? size : 0;
+                if (list == null) {
+                    list = new int[4];
+                } else if (n == list.length) {
+                    list = Arrays.copyOf(list, n * 2);
+                }
+                list[n] = id;
+                postings.put(gram, list);
+                sizes.put(gram, n + 1);
+            }
+        }
+        for (Map.Entry<Long, int[]> e : postings.entrySet()) {
+            e.setValue(Arrays.copyOf(e.getValue(), sizes.get(e.getKey())));
+        }
+        return new Segment(from, to, postings);
+    }
+
+    /**
+     * 合并两个相邻的段，顺带去掉已删除的条目。a 的 id 都小于 b 的 id，拼接后仍然有序。
+     */
+    private Segment merge(Segment a, Segment b) {
+        Map<Long, int[]> postings = new HashMap<>(a.postings.size() + b.postings.size());
+        for (Map.Entry<Long, int[]> e : a.postings.entrySet()) {
+            int[] list = liveIds(e.getValue(), b.postings.get(e.getKey()));
+            if (list.length > 0) postings.put(e.getKey(), list);
+        }
+        for (Map.Entry<Long, int[]> e : b.postings.entrySet()) {
+            if (a.postings.containsKey(e.getKey())) continue;
+            int[] list = liveIds(e.getValue(), null);
+            if (list.length > 0) postings.put(e.getKey(), list);
+        }
+        return new Segment(a.from, b.to, postings);
+    }
+
+    private int[] liveIds(int[] first, int[] second) {
+        int[] out = new int[first.length + (second != null ? second.length : 0)];
+        int n = 0;
+        for (int id : first) if (docs[id].removedIn == Integer.MAX_VALUE) out[n++] = id;
+        if (second != null) {
+            for (int id : second) if (docs[id].removedIn == Integer.MAX_VALUE) out[n++] = id;
+        }
+        return n == out.length ? out : Arrays.copyOf(out, n);
+    }
+
+    /**
+     * 返回与 query 匹配的条目 key，按相关度排序（网站名完全匹配 > 网站名前缀 > 网站名包含 >
+     * 用户名），相关度相同时按网站名排序。query 为空时返回全部条目。
+     * 查询被取消时返回 null。可在任意线程上调用，不阻塞修改。
+     */
+    public List<String> search(String query, Cancellation cancellation) {
+        Snapshot s = snapshot;
+        if (cancellation != null && cancellation.isCancelled()) return null;
+        String q = lower(query).trim();
+        s.ensureOrder();
+        if (q.isEmpty()) {
+            List<String> keys = new ArrayList<>(s.docAtRank.length);
+            for (int docId : s.docAtRank) keys.add(s.docs[docId].key);
+            return keys;
+        }
+        // 高 32 位是反转后的分数，低 32 位是名次，直接对 long 排序即得到最终顺序
+        long[] hits = new long[16];
+        int n = 0;
+        int checked = 0;
+        for (Segment segment : s.segments) {
+            for (int id : candidateIds(segment, q)) {
+                if (cancellation != null && checked++ % CANCEL_CHECK_INTERVAL == 0 && cancellation.isCancelled()) {
+                    return null;
+                }
+                if (id >= s.docCount || !s.isLive(id)) continue;
+                int score = score(s.docs[id], q);
+                if (score <= 0) continue;
+                if (n == hits.length) hits = Arrays.copyOf(hits, n * 2);
+                hits[n++] = ((long) (MAX_SCORE - score) << 32) | s.rankOfDoc[id];
+            }
+        }
+        Arrays.sort(hits, 0, n);
+        if (cancellation != null && cancellation.isCancelled()) return null;
+        List<String> keys = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) keys.add(s.docs[s.docAtRank[(int) hits[i]]].key);
+        return keys;
+    }
+
+    private static int score(Doc doc, String q) {
+        if (doc.site.equals(q)) return MAX_SCORE;
+        if (doc.site.startsWith(q)) return 80;
+        if (doc.site.contains(q)) return 60;
+        if (doc.username.startsWith(q)) return 40;
+        if (doc.username.contains(q)) return 30;
+        return 0;
+    }
+
+    private int[] candidateIds(Segment segment, String q) {
+        List<int[]> lists = new ArrayList<>();
+        if (q.length() == 1) {
+            int[] list = segment.postings.get(gramHash(q.charAt(0), (char) 0));
+            if (list == null) return new int[0];
+            lists.add(list);
+        } else {
+            for (int i = 0; i + 1 < q.length(); i++) {
+                int[] list = segment.postings.get(gramHash(q.charAt(i), q.charAt(i + 1)));
+                if (list == null) return new int[0];
+                lists.add(list);
+            }
+        }
+        Collections.sort(lists, new Comparator<int[]>() {
+            @Override
+            public int compare(int[] a, int[] b) {
+                return a.length - b.length;
+            }
+        });
+        int[] result = lists.get(0).clone();
+        int resultSize = result.length;
+        for (int l = 1; l < lists.size() && resultSize > 0; l++) {
+            int[] other = lists.get(l);
+            int i = 0, j = 0, n = 0;
+            while (i < resultSize && j < other.length) {
+                int a = result[i], b = other[j];
+                if (a == b) {
+                    result[n++] = a;
+                    i++;
+                    j++;
+                } else if (a < b) {
+                    i++;
+                } else {
+                    j++;
+                }
+            }
+            resultSize = n;
+        }
+        return Arrays.copyOf(result, resultSize);
+    }
+
+    private void collectGrams(String s, Set<Long> out) {
+        for (int i = 0; i < s.length(); i++) {
+            out.add(gramHash(s.charAt(i), (char) 0));
+            if (i + 1 < s.length()) {
+                out.add(gramHash(s.charAt(i), s.charAt(i + 1)));
+            }
+        }
+    }
+
+    private long gramHash(char a, char b) {
+        long h = hashKey0 ^ (((long) a << 16) | b);
+        h *= 0x9E3779B97F4A7C15L;
+        h ^= hashKey1;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static String lower(String s) {
+        return s != null ? s.toLowerCase(Locale.ROOT) : "";
+    }
+}
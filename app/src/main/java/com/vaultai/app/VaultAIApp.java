@@ -1,25 +1,132 @@
 package com.vaultai.app;
 
+import android.app.Activity;
 import android.app.Application;
+import android.content.Context;
+import android.os.Bundle;
 import android.util.Log;
 import java.io.File;
-import java.io.FileOutputStream;
+import java.io.FileInputStream;
 import java.nio.charset.StandardCharsets;
 
 public class VaultAIApp extends Application {
+    static final String WATCHDOG_THRESHOLD_KEY = "watchdog_threshold_ms";
+
+    private VaultSession session;
+    private MainThreadWatchdog watchdog;
+    // 处于 started 状态的 Activity 数，大于 0 表示应用在前台
+    private int startedActivities;
+
+    /**
+     * 进程内唯一的密码库会话。
+     */
+    public static VaultSession session(Context context) {
+        return ((VaultAIApp) context.getApplicationContext()).getSession();
+    }
+
+    public VaultSession getSession() {
+        return session;
+    }
+
+    /**
+     * 主线程卡顿检测，应用在前台时运行。
+     */
+    public static MainThreadWatchdog watchdog(Context context) {
+        return ((VaultAIApp) context.getApplicationContext()).watchdog;
+    }
+
+    /**
+     * 内存映射的事件日志，见 VaultTrace。
+     */
+    static File traceFile(Context context) {
+        return new File(context.getFilesDir(), "trace.ring");
+    }
+
+    /**
+     * 旧版本把最近一次崩溃写在 last_crash.txt 中（第一行为时间戳），转存到事件日志后删除。
+     */
+    private void importLegacyCrash() {
+        File legacy = new File(getFilesDir(), "last_crash.txt");
+        if (!legacy.exists()) return;
+        try (FileInputStream in = new FileInputStream(legacy)) {
+            byte[] bytes = new byte[(int) Math.min(legacy.length(), VaultTrace.CRASH_BYTES)];
+            int n = 0;
+            int r;
+            while (n < bytes.length && (r = in.read(bytes, n, bytes.length - n)) > 0) {
+                n += r;
+            }
+            String content = new String(bytes, 0, n, StandardCharsets.UTF_8);
+            int newline = content.indexOf('\n');
+            long when = legacy.lastModified();
+            try {
+                when = Long.parseLong(content.substring(0, newline).trim());
+                content = content.substring(newline + 1);
+            } catch (RuntimeException ignored) {}
+            VaultTrace.recordCrash(when, content);
+        } catch (Exception e) {
+            Log.w("VaultAIApp", "读取旧崩溃记录失败", e);
+        }
+        legacy.delete();
+    }
+
     @Override
     public void onCreate() {
         super.onCreate();
+        VaultTrace.open(traceFile(this));
+        VaultTrace.log(VaultTrace.APP_START, android.os.Process.myPid(), android.os.Build.VERSION.SDK_INT, 0);
+        importLegacyCrash();
+        VaultMetrics.setEnabled(getSharedPreferences("VaultAIAuth", MODE_PRIVATE).getBoolean("metrics_enabled", false));
+        session = new VaultSession(this);
+        long threshold = getSharedPreferences("VaultAIAuth", MODE_PRIVATE)
+                .getLong(WATCHDOG_THRESHOLD_KEY, MainThreadWatchdog.DEFAULT_THRESHOLD_MILLIS);
+        watchdog = new MainThreadWatchdog(threshold);
+        // 旧版本的看门狗把卡顿记录写在单独的环形文件中，现在记录在 trace.ring 里
+        new File(getFilesDir(), "main_thread_trace.bin").delete();
+        registerActivityLifecycleCallbacks(new ActivityLifecycleCallbacks() {
+            @Override
+            public void onActivityCreated(Activity activity, Bundle savedInstanceState) {}
+
+            @Override
+            public void onActivityStarted(Activity activity) {
+                if (startedActivities++ == 0) {
+                    watchdog.start();
+                }
+            }
+
+            @Override
+            public void onActivityResumed(Activity activity) {
+                session.onActivityResumed();
+            }
+
+            @Override
+            public void onActivityPaused(Activity activity) {
+                session.onActivityPaused();
+            }
+
+            @Override
+            public void onActivityStopped(Activity activity) {
+                if (--startedActivities == 0) {
+                    watchdog.stop();
+                }
+            }
+
+            @Override
+            public void onActivitySaveInstanceState(Activity activity, Bundle outState) {}
+
+            @Override
+            public void onActivityDestroyed(Activity activity) {}
+        });
+        final Thread.UncaughtExceptionHandler previous = Thread.getDefaultUncaughtExceptionHandler();
         Thread.setDefaultUncaughtExceptionHandler((t, e) -> {
             try {
-                String content = System.currentTimeMillis() + "\n" + Log.getStackTraceString(e);
-                File f = new File(getFilesDir(), "last_crash.txt");
-                try (FileOutputStream out = new FileOutputStream(f, false)) {
-                    out.write(content.getBytes(StandardCharsets.UTF_8));
-                }
-            } catch (Exception ex) {
+                VaultTrace.recordCrash(System.currentTimeMillis(), "thread " + t.getName() + "\n" + Log.getStackTraceString(e));
+            } catch (Throwable ex) {
                 Log.e("VaultAIApp", "Crash log write failed", ex);
             }
+            // 交给系统默认处理，结束进程
+            if (previous != null) {
+                previous.uncaughtException(t, e);
+            }
         });
     }
 }
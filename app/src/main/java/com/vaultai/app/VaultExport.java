@@ -0,0 +1,257 @@
+package com.vaultai.app;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * 流式加密导出格式。
+ *
+ * 文件头：[magic "VAEX":4][version:1][salt:16]，导出密钥 = PBKDF2(主密码, salt)。
+ * 随后是若干帧：[是否最后一帧:1][密文长度:4][iv:12][密文+tag]，每帧独立用 AES-GCM 认证，
+ * AAD 为文件头 + 帧序号(8) + 最后一帧标记(1)，因此帧被重排、删除或文件被截断都会被发现。
+ * 所有帧的明文拼接起来是条目流：每个条目为 [len:4][PasswordEntry.toBytes()]。
+ *
+ * 写入和读取都只缓冲一帧（CHUNK_SIZE），内存占用与条目数量无关。
+ */
+public final class VaultExport {
+    static final byte[] MAGIC = {'V', 'A', 'E', 'X'};
+    static final byte VERSION = 1;
+    static final int SALT_LENGTH = 16;
+    static final int HEADER_LENGTH = MAGIC.length + 1 + SALT_LENGTH;
+    static final int CHUNK_SIZE = 64 * 1024;
+    private static final int IV_LENGTH = 12;
+    private static final int TAG_LENGTH = 16;
+    private static final int MAX_ENTRY_LENGTH = 16 * 1024 * 1024;
+
+    private VaultExport() {
+    }
+
+    /**
+     * 检查输入流开头是否为流式导出格式，不消耗数据。in 必须支持 mark。
+     */
+    public static boolean isStreamingExport(InputStream in) throws IOException {
+        in.mark(MAGIC.length);
+        byte[] head = new byte[MAGIC.length];
+        int n = 0;
+        while (n < head.length) {
+            int r = in.read(head, n, head.length - n);
+            if (r < 0) break;
+            n += r;
+        }
+        in.reset();
+        return n == head.length && Arrays.equals(head, MAGIC);
+    }
+
+    static byte[] newHeader(byte[] salt) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+        header.put(MAGIC).put(VERSION).put(salt);
+        return header.array();
+    }
+
+    /**
+     * 读取并校验文件头，返回完整的头部字节。
+     */
+    static byte[] readHeader(InputStream in) throws IOException {
+        byte[] header = new byte[HEADER_LENGTH];
+        new DataInputStream(in).readFully(header);
+        if (!Arrays.equals(Arrays.copyOf(header, MAGIC.length), MAGIC)) {
+            throw new IOException("Not a vault export");
+        }
+        if (header[MAGIC.length] != VERSION) {
+            throw new IOException("Unsupported export version " + header[MAGIC.length]);
+        }
+        return header;
+    }
+
+    static byte[] saltOf(byte[] header) {
+        return Arrays.copyOfRange(header, MAGIC.length + 1, HEADER_LENGTH);
+    }
+
+    private static void updateAad(Cipher cipher, byte[] header, long chunkIndex, boolean last) {
+        ByteBuffer aad = ByteBuffer.allocate(header.length + 9);
+        aad.put(header).putLong(chunkIndex).put((byte) (last ? 1 : 0));
+        cipher.updateAAD(aad.array());
+    }
+
+    /**
+     * 逐条写入条目，缓冲满一帧就加密输出。必须调用 close() 写出最后一帧，否则文件会被判定为截断。
+     */
+    public static final class Writer implements java.io.Closeable {
+        private final OutputStream out;
+        private final SecretKeySpec key;
+        private final byte[] header;
+        private final ByteBuffer chunk = ByteBuffer.allocate(CHUNK_SIZE);
+        private final byte[] sealed = new byte[IV_LENGTH + CHUNK_SIZE + TAG_LENGTH];
+        private long chunkIndex;
+        private int entryCount;
+        private boolean closed;
+
+        Writer(OutputStream out, SecretKeySpec key, byte[] salt) throws IOException {
+            this.out = out;
+            this.key = key;
+            this.header = newHeader(salt);
+            out.write(header);
+        }
+
+        public void write(PasswordEntry entry) throws IOException {
+            byte[] record = entry.toBytes();
+            writeBytes(ByteBuffer.allocate(4).putInt(record.length).array());
+            writeBytes(record);
+            entryCount++;
+        }
+
+        public int getEntryCount() {
+            return entryCount;
+        }
+
+        private void writeBytes(byte[] data) throws IOException {
+            int offset = 0;
+            while (offset < data.length) {
+                if (!chunk.hasRemaining()) {
+                    flushChunk(false);
+                }
+                int n = Math.min(chunk.remaining(), data.length - offset);
+                chunk.put(data, offset, n);
+                offset += n;
+            }
+        }
+
+        private void flushChunk(boolean last) throws IOException {
+            try {
+                byte[] iv = CryptoContext.randomBytes(IV_LENGTH);
+                Cipher cipher = CryptoContext.gcm();
+                cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(128, iv));
+                updateAad(cipher, header, chunkIndex, last);
+                System.arraycopy(iv, 0, sealed, 0, IV_LENGTH);
+                int length = cipher.doFinal(chunk.array(), 0, chunk.position(), sealed, IV_LENGTH);
+                out.write(last ? 1 : 0);
+                out.write(ByteBuffer.allocate(4).putInt(length).array());
+                out.write(sealed, 0, IV_LENGTH + length);
+            } catch (java.security.GeneralSecurityException e) {
+                throw new IOException("Failed to encrypt export chunk", e);
+            }
+            chunk.clear();
+            chunkIndex++;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) return;
+            closed = true;
+            flushChunk(true);
+            out.flush();
+        }
+    }
+
+    /**
+     * 逐帧解密并逐条返回条目。帧认证失败、序号不连续或缺少最后一帧时抛出 IOException。
+     */
+    public static final class Reader implements VaultImporter.EntrySource {
+        private final DataInputStream in;
+        private final SecretKeySpec key;
+        private final byte[] header;
+        private final byte[] sealed = new byte[IV_LENGTH + CHUNK_SIZE + TAG_LENGTH];
+        private final ByteBuffer chunk = ByteBuffer.allocate(CHUNK_SIZE);
+        private long chunkIndex;
+        private boolean lastSeen;
+
+        Reader(InputStream in, byte[] header, SecretKeySpec key) {
+            this.in = new DataInputStream(in instanceof BufferedInputStream ? in : new BufferedInputStream(in));
+            this.header = header;
+            this.key = key;
+            chunk.limit(0);
+        }
+
+        /**
+         * 返回下一个条目，到达末尾时返回 null。
+         */
+        @Override
+        public PasswordEntry next() throws IOException {
+            byte[] lengthBytes = new byte[4];
+            if (!readPlain(lengthBytes, true)) return null;
+            int length = ByteBuffer.wrap(lengthBytes).getInt();
+            if (length < 0 || length > MAX_ENTRY_LENGTH) {
+                throw new IOException("Invalid entry length " + length);
+            }
+            byte[] record = new byte[length];
+            readPlain(record, false);
+            try {
+                return PasswordEntry.fromBytes(record);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Corrupt export entry", e);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+
+        /**
+         * 从明文流读满 dst。allowEnd 为 true 时在条目边界遇到流末尾返回 false。
+         */
+        private boolean readPlain(byte[] dst, boolean allowEnd) throws IOException {
+            int offset = 0;
+            while (offset < dst.length) {
+                if (!chunk.hasRemaining()) {
+                    if (lastSeen) {
+                        if (allowEnd && offset == 0) return false;
+                        throw new EOFException("Truncated export entry");
+                    }
+                    readChunk();
+                    continue;
+                }
+                int n = Math.min(chunk.remaining(), dst.length - offset);
+                chunk.get(dst, offset, n);
+                offset += n;
+            }
+            return true;
+        }
+
+        private void readChunk() throws IOException {
+            int flag = in.read();
+            if (flag < 0) {
+                throw new EOFException("Export is truncated: final chunk missing");
+            }
+            int length;
+            try {
+                length = in.readInt();
+                if ((flag & ~1) != 0 || length < TAG_LENGTH || length > CHUNK_SIZE + TAG_LENGTH) {
+                    throw new IOException("Invalid chunk header");
+                }
+                in.readFully(sealed, 0, IV_LENGTH + length);
+            } catch (EOFException e) {
+                throw new EOFException("Export is truncated in chunk " + chunkIndex);
+            }
+            boolean last = flag == 1;
+            int plainLength;
+            try {
+                Cipher cipher = CryptoContext.gcm();
+                cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(128, sealed, 0, IV_LENGTH));
+                updateAad(cipher, header, chunkIndex, last);
+                plainLength = cipher.doFinal(sealed, IV_LENGTH, length, chunk.array(), 0);
+            } catch (java.security.GeneralSecurityException e) {
+                throw new IOException("Export chunk " + chunkIndex + " failed authentication", e);
+            }
+            if (last) {
+                lastSeen = true;
+                if (in.read() != -1) {
+                    throw new IOException("Unexpected data after final chunk");
+                }
+            }
+            chunk.position(0);
+            chunk.limit(plainLength);
+            chunkIndex++;
+        }
+    }
+}
@@ -0,0 +1,433 @@
+package com.vaultai.app;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * 追加写入的二进制密码库文件。
+ *
+ * 文件格式：8 字节文件头（magic + 版本），随后是一串记录：
+ * [op:1][keyLen:4][valueLen:4][key][value][crc32:4]。
+ * 一次提交中的所有 PUT/DELETE 记录之后紧跟一条 COMMIT 记录，
+ * 打开文件时只应用以 COMMIT 结尾的完整批次，末尾残缺或校验失败的数据会被截断，
+ * 因此进程在写入途中被杀也不会留下半个批次。
+ *
+ * 读取通过 MappedByteBuffer 完成，内存中只保存 key 到值位置的索引（见 VaultIndex），
+ * 索引定期快照到 vault.idx，冷启动时只重放快照之后的日志尾部。
+ */
+public class VaultFile {
+    private static final int MAGIC = 0x56415531; // "VAU1"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final byte OP_PUT = 1;
+    private static final byte OP_DELETE = 2;
+    private static final byte OP_COMMIT = 3;
+    private static final int RECORD_HEADER_SIZE = 1 + 4 + 4;
+    private static final int RECORD_OVERHEAD = RECORD_HEADER_SIZE + 4;
+    private static final long COMPACT_MIN_GARBAGE = 64 * 1024;
+    private static final long SNAPSHOT_INTERVAL = 256 * 1024;
+
+    private static final Map<String, VaultFile> OPEN_FILES = new HashMap<>();
+
+    private final File file;
+    private RandomAccessFile raf;
+    private FileChannel channel;
+    private MappedByteBuffer mapped;
+    private long writePosition;
+    private long snapshotPosition;
+    private final VaultIndex index = new VaultIndex();
+
+    private VaultFile(File file) {
+        this.file = file;
+    }
+
+    /**
+     * 打开（或创建）密码库文件。同一路径在进程内只会打开一次，
+     * 多个 PasswordManager 实例共享同一份索引。
+     */
+    public static VaultFile open(File file) throws IOException {
+        synchronized (OPEN_FILES) {
+            String path = file.getAbsolutePath();
+            VaultFile vault = OPEN_FILES.get(path);
+            if (vault == null) {
+                vault = new VaultFile(file);
+                vault.load();
+                OPEN_FILES.put(path, vault);
+            }
+            return vault;
+        }
+    }
+
+    private void load() throws IOException {
+        File tmp = compactionFile();
+        if (tmp.exists() && !tmp.delete()) {
+            throw new IOException("Failed to remove stale compaction file");
+        }
+        raf = new RandomAccessFile(file, "rw");
+        channel = raf.getChannel();
+        if (channel.size() < HEADER_SIZE) {
+            writeHeader();
+            writePosition = HEADER_SIZE;
+            return;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        channel.read(header, 0);
+        header.flip();
+        if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+            throw new IOException("Unsupported vault file format");
+        }
+        long from = HEADER_SIZE;
+        long[] snapshot = VaultIndex.load(indexFile(), index);
+        if (snapshot != null && snapshot[0] >= HEADER_SIZE && snapshot[0] <= channel.size()
+                && tailFingerprint(snapshot[0]) == (int) snapshot[1]) {
+            from = snapshot[0];
+        } else {
+            index.clear();
+        }
+        snapshotPosition = from;
+        replay(from);
+        if (writePosition - snapshotPosition >= SNAPSHOT_INTERVAL) {
+            saveSnapshot();
+        }
+    }
+
+    private void writeHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION);
+        header.flip();
+        channel.truncate(0);
+        channel.write(header, 0);
+        channel.force(true);
+        mapped = null;
+    }
+
+    /**
+     * 从 from 开始重放日志，更新索引；遇到不完整或损坏的尾部时截断到最后一次成功提交的位置。
+     */
+    private void replay(long from) throws IOException {
+        long size = channel.size();
+        MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        CRC32 crc = new CRC32();
+        List<Object[]> pending = new ArrayList<>();
+        long pos = from;
+        long committed = from;
+        while (pos + RECORD_OVERHEAD <= size) {
+            buf.position((int) pos);
+            byte op = buf.get();
+            int keyLen = buf.getInt();
+            int valueLen = buf.getInt();
+            if (keyLen < 0 || valueLen < 0 || pos + RECORD_OVERHEAD + keyLen + valueLen > size) {
+                break;
+            }
+            int bodyLen = RECORD_HEADER_SIZE + keyLen + valueLen;
+            ByteBuffer body = buf.duplicate();
+            body.position((int) pos);
+            body.limit((int) pos + bodyLen);
+            crc.reset();
+            crc.update(body);
+            buf.position((int) pos + bodyLen);
+            if ((int) crc.getValue() != buf.getInt()) {
+                break;
+            }
+            long next = pos + bodyLen + 4;
+            if (op == OP_COMMIT) {
+                for (Object[] p : pending) {
+                    applyToIndex((Byte) p[0], (String) p[1], (Long) p[2], (Integer) p[3], (Integer) p[4]);
+                }
+                pending.clear();
+                index.addGarbage(next - pos);
+                committed = next;
+            } else if (op == OP_PUT || op == OP_DELETE) {
+                byte[] keyBytes = new byte[keyLen];
+                buf.position((int) pos + RECORD_HEADER_SIZE);
+                buf.get(keyBytes);
+                String key = new String(keyBytes, StandardCharsets.UTF_8);
+                pending.add(new Object[]{op, key, pos + RECORD_HEADER_SIZE + keyLen, valueLen, (int) (next - pos)});
+            } else {
+                break;
+            }
+            pos = next;
+        }
+        if (committed < size) {
+            // 丢弃未提交或损坏的尾部
+            channel.truncate(committed);
+            channel.force(true);
+        }
+        writePosition = committed;
+        mapped = null;
+    }
+
+    private void applyToIndex(byte op, String key, long valueOffset, int valueLen, int recordLen) {
+        if (op == OP_PUT) {
+            index.put(key, new VaultIndex.Location(valueOffset, valueLen, recordLen));
+        } else {
+            index.remove(key, recordLen);
+        }
+    }
+
+    private int tailFingerprint(long end) throws IOException {
+        long start = Math.max(HEADER_SIZE, end - VaultIndex.TAIL_FINGERPRINT_BYTES);
+        ByteBuffer tail = ByteBuffer.allocate((int) (end - start));
+        while (tail.hasRemaining()) {
+            if (channel.read(tail, start + tail.position()) < 0) break;
+        }
+        tail.flip();
+        CRC32 crc = new CRC32();
+        crc.update(tail);
+        return (int) crc.getValue();
+    }
+
+    private void saveSnapshot() {
+        try {
+            index.save(indexFile(), writePosition, tailFingerprint(writePosition));
+            snapshotPosition = writePosition;
+        } catch (IOException e) {
+            // 快照只是加速手段，写失败时下次打开会重放完整日志
+            e.printStackTrace();
+        }
+    }
+
+    public synchronized byte[] get(String key) throws IOException {
+        VaultIndex.Location loc = index.get(key);
+        if (loc == null) return null;
+        ByteBuffer view = mappedView(loc.valueOffset + loc.valueLength);
+        byte[] out = new byte[loc.valueLength];
+        view.position((int) loc.valueOffset);
+        view.get(out);
+        return out;
+    }
+
+    /**
+     * 把 key 对应的值从映射文件直接复制到 dst 的当前位置，不分配中间数组。
+     * 返回值的长度，不存在时返回 -1；dst 剩余空间不足时不复制，调用方按返回的长度扩容后重试。
+     */
+    public synchronized int read(String key, ByteBuffer dst) throws IOException {
+        VaultIndex.Location loc = index.get(key);
+        if (loc == null) return -1;
+        if (loc.valueLength > dst.remaining()) return loc.valueLength;
+        // 在锁内直接移动共享映射的 position/limit，避免 duplicate()
+        MappedByteBuffer view = ensureMapped(loc.valueOffset + loc.valueLength);
+        view.limit((int) (loc.valueOffset + loc.valueLength));
+        view.position((int) loc.valueOffset);
+        dst.put(view);
+        view.clear();
+        return loc.valueLength;
+    }
+
+    public synchronized boolean contains(String key) {
+        return index.contains(key);
+    }
+
+    public synchronized List<String> keys() {
+        return index.keys();
+    }
+
+    public synchronized List<String> keysWithPrefix(String prefix) {
+        return index.keysWithPrefix(prefix);
+    }
+
+    public synchronized List<String> keysInRange(String fromKey, String toKey) {
+        return index.keysInRange(fromKey, toKey);
+    }
+
+    public synchronized int size() {
+        return index.size();
+    }
+
+    public Editor edit() {
+        return new Editor();
+    }
+
+    /**
+     * 删除所有条目，文件只保留文件头。
+     */
+    public synchronized void clear() throws IOException {
+        writeHeader();
+        index.clear();
+        writePosition = HEADER_SIZE;
+        saveSnapshot();
+    }
+
+    private ByteBuffer mappedView(long end) throws IOException {
+        return ensureMapped(end).duplicate();
+    }
+
+    private MappedByteBuffer ensureMapped(long end) throws IOException {
+        if (mapped == null || mapped.capacity() < end) {
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, writePosition);
+        }
+        return mapped;
+    }
+
+    private synchronized void commit(LinkedHashMap<String, byte[]> ops) throws IOException {
+        if (ops.isEmpty()) return;
+        int total = RECORD_OVERHEAD;
+        List<byte[]> keyBytes = new ArrayList<>(ops.size());
+        for (Map.Entry<String, byte[]> op : ops.entrySet()) {
+            byte[] k = op.getKey().getBytes(StandardCharsets.UTF_8);
+            keyBytes.add(k);
+            byte[] v = op.getValue();
+            total += RECORD_OVERHEAD + k.length + (v != null ? v.length : 0);
+        }
+        ByteBuffer out = ByteBuffer.allocate(total);
+        List<Object[]> applied = new ArrayList<>(ops.size());
+        CRC32 crc = new CRC32();
+        int i = 0;
+        for (Map.Entry<String, byte[]> op : ops.entrySet()) {
+            byte[] k = keyBytes.get(i++);
+            byte[] v = op.getValue();
+            byte type = v != null ? OP_PUT : OP_DELETE;
+            int start = out.position();
+            long valueOffset = writePosition + start + RECORD_HEADER_SIZE + k.length;
+            int valueLen = v != null ? v.length : 0;
+            out.put(type).putInt(k.length).putInt(valueLen).put(k);
+            if (v != null) out.put(v);
+            appendCrc(out, start, crc);
+            applied.add(new Object[]{type, op.getKey(), valueOffset, valueLen, out.position() - start});
+        }
+        int commitStart = out.position();
+        out.put(OP_COMMIT).putInt(0).putInt(0);
+        appendCrc(out, commitStart, crc);
+        out.flip();
+        long pos = writePosition;
+        while (out.hasRemaining()) {
+            pos += channel.write(out, pos);
+        }
+        channel.force(false);
+        writePosition = pos;
+        for (Object[] p : applied) {
+            applyToIndex((Byte) p[0], (String) p[1], (Long) p[2], (Integer) p[3], (Integer) p[4]);
+        }
+        index.addGarbage(RECORD_OVERHEAD);
+        if (!maybeCompact() && writePosition - snapshotPosition >= SNAPSHOT_INTERVAL) {
+            saveSnapshot();
+        }
+    }
+
+    private static void appendCrc(ByteBuffer out, int start, CRC32 crc) {
+        ByteBuffer body = out.duplicate();
+        body.flip();
+        body.position(start);
+        crc.reset();
+        crc.update(body);
+        out.putInt((int) crc.getValue());
+    }
+
+    private boolean maybeCompact() throws IOException {
+        long garbage = index.garbageBytes();
+        long live = writePosition - HEADER_SIZE - garbage;
+        if (garbage >= COMPACT_MIN_GARBAGE && garbage > live) {
+            compact();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 只保留当前有效条目重写文件。先写入临时文件并落盘，再原子替换原文件。
+     */
+    public synchronized void compact() throws IOException {
+        File tmp = compactionFile();
+        Map<String, VaultIndex.Location> live = index.snapshot();
+        Map<String, VaultIndex.Location> relocated = new HashMap<>(live.size() * 2);
+        long compactedLength;
+        ByteBuffer view = mappedView(writePosition);
+        try (RandomAccessFile out = new RandomAccessFile(tmp, "rw")) {
+            FileChannel outChannel = out.getChannel();
+            outChannel.truncate(0);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION);
+            header.flip();
+            long pos = outChannel.write(header, 0);
+            CRC32 crc = new CRC32();
+            for (Map.Entry<String, VaultIndex.Location> e : live.entrySet()) {
+                byte[] k = e.getKey().getBytes(StandardCharsets.UTF_8);
+                VaultIndex.Location loc = e.getValue();
+                ByteBuffer record = ByteBuffer.allocate(RECORD_OVERHEAD + k.length + loc.valueLength);
+                record.put(OP_PUT).putInt(k.length).putInt(loc.valueLength).put(k);
+                ByteBuffer value = view.duplicate();
+                value.position((int) loc.valueOffset);
+                value.limit((int) (loc.valueOffset + loc.valueLength));
+                record.put(value);
+                appendCrc(record, 0, crc);
+                record.flip();
+                long valueOffset = pos + RECORD_HEADER_SIZE + k.length;
+                relocated.put(e.getKey(), new VaultIndex.Location(valueOffset, loc.valueLength, record.remaining()));
+                while (record.hasRemaining()) {
+                    pos += outChannel.write(record, pos);
+                }
+            }
+            ByteBuffer commit = ByteBuffer.allocate(RECORD_OVERHEAD);
+            commit.put(OP_COMMIT).putInt(0).putInt(0);
+            appendCrc(commit, 0, crc);
+            commit.flip();
+            while (commit.hasRemaining()) {
+                pos += outChannel.write(commit, pos);
+            }
+            outChannel.force(true);
+            compactedLength = pos;
+        }
+        mapped = null;
+        channel.close();
+        raf.close();
+        boolean replaced = tmp.renameTo(file);
+        raf = new RandomAccessFile(file, "rw");
+        channel = raf.getChannel();
+        if (!replaced) {
+            throw new IOException("Failed to replace vault file after compaction");
+        }
+        index.clear();
+        for (Map.Entry<String, VaultIndex.Location> e : relocated.entrySet()) {
+            index.put(e.getKey(), e.getValue());
+        }
+        index.addGarbage(RECORD_OVERHEAD);
+        writePosition = compactedLength;
+        saveSnapshot();
+    }
+
+    private File compactionFile() {
+        return new File(file.getParentFile(), file.getName() + ".compact");
+    }
+
+    private File indexFile() {
+        return new File(file.getParentFile(), file.getName().replace(".dat", "") + ".idx");
+    }
+
+    /**
+     * 与 SharedPreferences.Editor 类似的批量写入器，commit() 时一次性追加并落盘。
+     */
+    public class Editor {
+        private final LinkedHashMap<String, byte[]> ops = new LinkedHashMap<>();
+
+        public Editor put(String key, byte[] value) {
+            if (value == null) throw new IllegalArgumentException("value cannot be null");
+            ops.put(key, value);
+            return this;
+        }
+
+        public Editor remove(String key) {
+            ops.put(key, null);
+            return this;
+        }
+
+        public boolean isEmpty() {
+            return ops.isEmpty();
+        }
+
+        public void commit() throws IOException {
+            VaultFile.this.commit(ops);
+            ops.clear();
+        }
+    }
+}
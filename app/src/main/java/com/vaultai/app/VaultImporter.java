@@ -0,0 +1,145 @@
+package com.vaultai.app;
+
+import android.util.Log;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 流式导入：逐条读取导出文件中的条目，预览和导入各扫描一遍，内存中最多只保留一批条目。
+ *
+ * 预览只统计总数、与现有条目重复的数量和无效条目数，重复判断走密码库索引，不解密现有条目。
+ * 导入按 BATCH_SIZE 分批调用 PasswordManager.upsertAll，每批单独原子提交。
+ */
+public class VaultImporter {
+    private static final String TAG = "VaultImporter";
+    static final int BATCH_SIZE = 500;
+
+    /**
+     * 条目来源，next() 到达末尾时返回 null。
+     */
+    public interface EntrySource extends Closeable {
+        PasswordEntry next() throws IOException;
+    }
+
+    public static final class Preview {
+        public final int total;
+        public final int duplicates;
+        public final int invalid;
+
+        Preview(int total, int duplicates, int invalid) {
+            this.total = total;
+            this.duplicates = duplicates;
+            this.invalid = invalid;
+        }
+    }
+
+    public static final class Result {
+        public final int saved;
+        public final int overwritten;
+        public final int skipped;
+        public final int failed;
+        // 第一批失败的原因，没有失败时为 null
+        public final Exception firstFailure;
+
+        Result(int saved, int overwritten, int skipped, int failed, Exception firstFailure) {
+            this.saved = saved;
+            this.overwritten = overwritten;
+            this.skipped = skipped;
+            this.failed = failed;
+            this.firstFailure = firstFailure;
+        }
+    }
+
+    private final PasswordManager passwordManager;
+
+    public VaultImporter(PasswordManager passwordManager) {
+        this.passwordManager = passwordManager;
+    }
+
+    /**
+     * 扫描一遍来源并统计预览数据。来源的认证或格式错误会以 IOException 抛出。
+     * 重复的判断与 upsertAll 相同：已存在的条目（含旧版只按网站名保存的键），以及同一批中前面已出现过的条目。
+     * 按与导入相同的 BATCH_SIZE 分批，只保留当前批的 key，内存不随文件大小增长。
+     * 跨批的文件内重复不计入：导入时前一批已提交，这类条目会按已存在处理，因此预览可能略少于实际的重复数。
+     */
+    public Preview preview(EntrySource source) throws IOException {
+        int total = 0;
+        int duplicates = 0;
+        int invalid = 0;
+        Set<String> seen = new HashSet<>();
+        try {
+            PasswordEntry entry;
+            while ((entry = source.next()) != null) {
+                if (total++ % BATCH_SIZE == 0) {
+                    seen.clear();
+                }
+                if (!isValid(entry)) {
+                    invalid++;
+                } else if (!seen.add(passwordManager.buildKey(entry.getSiteName(), entry.getUsername()))
+                        || passwordManager.containsEntry(entry.getSiteName(), entry.getUsername())) {
+                    duplicates++;
+                }
+            }
+        } finally {
+            source.close();
+        }
+        return new Preview(total, duplicates, invalid);
+    }
+
+    /**
+     * 导入来源中的条目。overwrite 为 false 时跳过已存在的条目，否则覆盖。
+     * 每批通过 upsertAll 原子提交，某一批失败时记录日志、计入 failed 并继续下一批，第一批的失败原因见 Result.firstFailure。
+     */
+    public Result importEntries(EntrySource source, boolean overwrite) throws IOException {
+        PasswordManager.ConflictPolicy policy = overwrite
+                ? PasswordManager.ConflictPolicy.OVERWRITE
+                : PasswordManager.ConflictPolicy.SKIP_EXISTING;
+        int saved = 0;
+        int overwritten = 0;
+        int skipped = 0;
+        int failed = 0;
+        Exception firstFailure = null;
+        List<PasswordEntry> batch = new ArrayList<>(BATCH_SIZE);
+        try {
+            PasswordEntry entry;
+            boolean done = false;
+            while (!done) {
+                entry = source.next();
+                if (entry != null) {
+                    batch.add(entry);
+                } else {
+                    done = true;
+                }
+                if (batch.size() >= BATCH_SIZE || (done && !batch.isEmpty())) {
+                    long t = VaultMetrics.start();
+                    try {
+                        PasswordManager.UpsertResult r = passwordManager.upsertAll(batch, policy);
+                        saved += r.inserted + r.overwritten;
+                        overwritten += r.overwritten;
+                        skipped += r.skipped + r.invalid;
+                    } catch (Exception e) {
+                        Log.e(TAG, "导入批次失败，" + batch.size() + " 个条目未保存", e);
+                        if (firstFailure == null) {
+                            firstFailure = e;
+                        }
+                        failed += batch.size();
+                    }
+                    VaultMetrics.IMPORT_BATCH.stop(t);
+                    batch.clear();
+                }
+            }
+        } finally {
+            source.close();
+        }
+        return new Result(saved, overwritten, skipped, failed, firstFailure);
+    }
+
+    private static boolean isValid(PasswordEntry entry) {
+        return !entry.getSiteName().isEmpty() && !entry.getUsername().isEmpty() && !entry.getPassword().isEmpty();
+    }
+}
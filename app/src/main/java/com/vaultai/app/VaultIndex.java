@@ -0,0 +1,170 @@
+package com.vaultai.app;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * 密码库文件的二级索引：按 buildKey(site, username) 排序，映射到密文记录在文件中的位置。
+ *
+ * 内存中是一棵 TreeMap，点查和存在性检查为 O(log n)，并支持前缀/区间查询，
+ * 全程不需要读取或解密密文。索引会定期快照到磁盘（vault.idx），
+ * 快照记录了它覆盖到的日志长度，打开时只需重放快照之后追加的那段日志。
+ */
+class VaultIndex {
+    private static final int MAGIC = 0x56495831; // "VIX1"
+    static final int TAIL_FINGERPRINT_BYTES = 4096;
+
+    static final class Location {
+        final long valueOffset;
+        final int valueLength;
+        final int recordLength;
+
+        Location(long valueOffset, int valueLength, int recordLength) {
+            this.valueOffset = valueOffset;
+            this.valueLength = valueLength;
+            this.recordLength = recordLength;
+        }
+    }
+
+    private final TreeMap<String, Location> entries = new TreeMap<>();
+    private long garbageBytes;
+
+    Location get(String key) {
+        return entries.get(key);
+    }
+
+    boolean contains(String key) {
+        return entries.containsKey(key);
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    long garbageBytes() {
+        return garbageBytes;
+    }
+
+    void addGarbage(long bytes) {
+        garbageBytes += bytes;
+    }
+
+    void put(String key, Location location) {
+        Location previous = entries.put(key, location);
+        if (previous != null) garbageBytes += previous.recordLength;
+    }
+
+    void remove(String key, int deleteRecordLength) {
+        Location previous = entries.remove(key);
+        if (previous != null) garbageBytes += previous.recordLength;
+        garbageBytes += deleteRecordLength;
+    }
+
+    void clear() {
+        entries.clear();
+        garbageBytes = 0;
+    }
+
+    List<String> keys() {
+        return new ArrayList<>(entries.keySet());
+    }
+
+    TreeMap<String, Location> snapshot() {
+        return new TreeMap<>(entries);
+    }
+
+    /**
+     * 返回所有以 prefix 开头的 key，按字典序排列。
+     */
+    List<String> keysWithPrefix(String prefix) {
+        return new ArrayList<>(entries.subMap(prefix, true, prefix + Character.MAX_VALUE, false).keySet());
+    }
+
+    /**
+     * 返回 [fromKey, toKey) 区间内的 key；toKey 为 null 时表示直到末尾。
+     */
+    List<String> keysInRange(String fromKey, String toKey) {
+        SortedMap<String, Location> range = toKey != null
+                ? entries.subMap(fromKey, toKey)
+                : entries.tailMap(fromKey);
+        return new ArrayList<>(range.keySet());
+    }
+
+    /**
+     * 把索引写入快照文件。先写临时文件并 sync，再原子替换。
+     */
+    void save(File indexFile, long coveredLength, int tailFingerprint) throws IOException {
+        File tmp = new File(indexFile.getParentFile(), indexFile.getName() + ".tmp");
+        CRC32 crc = new CRC32();
+        try (FileOutputStream fos = new FileOutputStream(tmp)) {
+            DataOutputStream out = new DataOutputStream(new CheckedOutputStream(new BufferedOutputStream(fos), crc));
+            out.writeInt(MAGIC);
+            out.writeLong(coveredLength);
+            out.writeInt(tailFingerprint);
+            out.writeLong(garbageBytes);
+            out.writeInt(entries.size());
+            for (Map.Entry<String, Location> e : entries.entrySet()) {
+                byte[] k = e.getKey().getBytes(StandardCharsets.UTF_8);
+                out.writeInt(k.length);
+                out.write(k);
+                out.writeLong(e.getValue().valueOffset);
+                out.writeInt(e.getValue().valueLength);
+                out.writeInt(e.getValue().recordLength);
+            }
+            out.flush();
+            int checksum = (int) crc.getValue();
+            fos.write(new byte[]{(byte) (checksum >>> 24), (byte) (checksum >>> 16), (byte) (checksum >>> 8), (byte) checksum});
+            fos.getFD().sync();
+        }
+        if (!tmp.renameTo(indexFile)) {
+            throw new IOException("Failed to replace index snapshot");
+        }
+    }
+
+    /**
+     * 读取快照。返回快照覆盖到的日志长度和尾部指纹，供调用方校验；快照损坏时返回 null。
+     */
+    static long[] load(File indexFile, VaultIndex into) {
+        if (!indexFile.exists()) return null;
+        CRC32 crc = new CRC32();
+        try (DataInputStream in = new DataInputStream(new CheckedInputStream(
+                new BufferedInputStream(new FileInputStream(indexFile)), crc))) {
+            if (in.readInt() != MAGIC) return null;
+            long coveredLength = in.readLong();
+            int tailFingerprint = in.readInt();
+            long garbage = in.readLong();
+            int count = in.readInt();
+            if (count < 0) return null;
+            TreeMap<String, Location> loaded = new TreeMap<>();
+            for (int i = 0; i < count; i++) {
+                byte[] k = new byte[in.readInt()];
+                in.readFully(k);
+                loaded.put(new String(k, StandardCharsets.UTF_8),
+                        new Location(in.readLong(), in.readInt(), in.readInt()));
+            }
+            int expected = (int) crc.getValue();
+            if (in.readInt() != expected) return null;
+            into.entries.clear();
+            into.entries.putAll(loaded);
+            into.garbageBytes = garbage;
+            return new long[]{coveredLength, tailFingerprint};
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
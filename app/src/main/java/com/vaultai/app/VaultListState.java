@@ -0,0 +1,40 @@
+package com.vaultai.app;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 主界面列表的内存模型，作用域为一次解锁会话，由 VaultSession 持有。
+ *
+ * Activity 因切换主题等原因重建时直接复用这里已解密的行、搜索索引、多选和滚动状态，
+ * 几毫秒内即可重新绑定，不再重新解密密码库。除 searchIndex 和 loadGeneration 外只在主线程上访问。
+ * 会话锁定时调用 discard()，之后不再使用。
+ */
+public final class VaultListState {
+    Map<String, PasswordListAdapter.Row> rowsByKey = new HashMap<>();
+    // 搜索线程也会读取
+    volatile SearchIndex searchIndex = new SearchIndex();
+    final Set<String> selectedKeys = new HashSet<>();
+    boolean multiSelectMode;
+    // 整个密码库是否已加载完成；未完成时重建的 Activity 会重新加载
+    boolean loaded;
+    // 每次加载递增，旧加载的后台任务据此放弃，即使它属于已销毁的 Activity
+    final AtomicInteger loadGeneration = new AtomicInteger();
+    // 加载未完成时用户删除的条目，之后发布的块跳过它们；加载完成时清空
+    final Set<String> removedWhileLoading = new HashSet<>();
+    // 第一个可见行及其顶部偏移，没有记录时为 -1
+    int scrollPosition = -1;
+    int scrollOffset;
+
+    /**
+     * 会话锁定时调用，可能在任意线程上：取消进行中的加载并清空搜索索引。
+     * 行数据只在主线程上访问，随持有它的 Activity 结束而释放。
+     */
+    void discard() {
+        loadGeneration.incrementAndGet();
+        searchIndex.clear();
+    }
+}
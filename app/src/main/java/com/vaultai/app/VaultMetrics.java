@@ -0,0 +1,292 @@
+package com.vaultai.app;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 进程内的性能统计：耗时直方图、计数器和瞬时值，用于生成可以附在问题反馈里的性能报告。
+ *
+ * 所有指标在类初始化时创建并注册，热路径上直接引用静态字段，不做名称查找。
+ * 记录只使用原子变量，不加锁。关闭时（默认）start() 返回 0，stop/inc/set 只读一次 volatile 变量后返回，
+ * 不调用 System.nanoTime()，也不分配对象。
+ *
+ * 用法：long t = VaultMetrics.start(); ...; VaultMetrics.DECRYPT.stop(t);
+ */
+public final class VaultMetrics {
+    private static volatile boolean enabled;
+    private static final List<Metric> REGISTRY = new ArrayList<>();
+
+    // PasswordManager
+    static final Histogram DERIVE = histogram("crypto.derive");
+    static final Histogram ENCRYPT = histogram("crypto.encrypt");
+    static final Histogram DECRYPT = histogram("crypto.decrypt");
+    static final Histogram DECRYPT_METADATA = histogram("crypto.decrypt_metadata");
+    static final Histogram STORE_READ = histogram("store.read");
+    static final Histogram STORE_WRITE = histogram("store.write");
+    static final Histogram PREFS_WRITE = histogram("prefs.write");
+
+    // LoginActivity
+    static final Histogram LOGIN_VERIFY = histogram("login.verify");
+    static final Counter LOGIN_FAILURES = counter("login.failures");
+
+    // MainActivity
+    static final Histogram LIST_LOAD = histogram("list.load");
+    static final Histogram LIST_FIRST_ROW = histogram("list.first_row");
+    static final Histogram LIST_FILTER = histogram("list.filter");
+    static final Histogram LIST_BIND = histogram("list.bind");
+    static final Counter LIST_LOAD_ERRORS = counter("list.load_errors");
+    static final Gauge VAULT_ENTRIES = gauge("vault.entries");
+
+    // 导出和导入的各个阶段
+    static final Histogram EXPORT_TOTAL = histogram("export.total");
+    static final Histogram EXPORT_DECRYPT = histogram("export.decrypt");
+    static final Histogram EXPORT_WRITE = histogram("export.write");
+    static final Histogram IMPORT_PREVIEW = histogram("import.preview");
+    static final Histogram IMPORT_BATCH = histogram("import.batch");
+    static final Histogram IMPORT_TOTAL = histogram("import.total");
+
+    private VaultMetrics() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean on) {
+        enabled = on;
+    }
+
+    /**
+     * 开始计时。关闭时返回 0，对应的 stop 不做任何事。
+     */
+    static long start() {
+        return enabled ? System.nanoTime() : 0L;
+    }
+
+    /**
+     * 清空所有指标（开关状态不变）。
+     */
+    public static void reset() {
+        for (Metric m : registered()) {
+            m.reset();
+        }
+    }
+
+    /**
+     * 生成纯文本报告，每个指标一行。直方图的分位数按桶上界估计，误差不超过 25%。
+     */
+    public static String dump(String header) {
+        StringBuilder sb = new StringBuilder();
+        if (header != null && !header.isEmpty()) {
+            sb.append(header).append('\n');
+        }
+        sb.append("metrics ").append(enabled ? "enabled" : "disabled").append('\n');
+        sb.append(String.format(Locale.US, "%-24s %8s %10s %10s %10s %10s %10s%n",
+                "histogram (ms)", "count", "mean", "p50", "p90", "p99", "max"));
+        List<Metric> metrics = registered();
+        for (Metric m : metrics) {
+            if (m instanceof Histogram) {
+                ((Histogram) m).appendTo(sb);
+            }
+        }
+        for (Metric m : metrics) {
+            if (!(m instanceof Histogram)) {
+                sb.append(String.format(Locale.US, "%-24s %8d%n", m.name, m.value()));
+            }
+        }
+        return sb.toString();
+    }
+
+    private static List<Metric> registered() {
+        synchronized (REGISTRY) {
+            return Collections.unmodifiableList(new ArrayList<>(REGISTRY));
+        }
+    }
+
+    private static <T extends Metric> T register(T metric) {
+        synchronized (REGISTRY) {
+            REGISTRY.add(metric);
+        }
+        return metric;
+    }
+
+    static Histogram histogram(String name) {
+        return register(new Histogram(name));
+    }
+
+    static Counter counter(String name) {
+        return register(new Counter(name));
+    }
+
+    static Gauge gauge(String name) {
+        return register(new Gauge(name));
+    }
+
+    abstract static class Metric {
+        final String name;
+
+        Metric(String name) {
+            this.name = name;
+        }
+
+        abstract long value();
+
+        abstract void reset();
+    }
+
+    static final class Counter extends Metric {
+        private final AtomicLong count = new AtomicLong();
+
+        Counter(String name) {
+            super(name);
+        }
+
+        void inc() {
+            if (enabled) count.incrementAndGet();
+        }
+
+        @Override
+        long value() {
+            return count.get();
+        }
+
+        @Override
+        void reset() {
+            count.set(0);
+        }
+    }
+
+    /**
+     * 最近一次设置的值。
+     */
+    static final class Gauge extends Metric {
+        private final AtomicLong current = new AtomicLong();
+
+        Gauge(String name) {
+            super(name);
+        }
+
+        void set(long value) {
+            if (enabled) current.set(value);
+        }
+
+        @Override
+        long value() {
+            return current.get();
+        }
+
+        @Override
+        void reset() {
+            current.set(0);
+        }
+    }
+
+    /**
+     * 纳秒耗时的对数直方图：每个 2 的幂区间再分 4 个桶，覆盖全部 long 范围，固定 256 个原子计数器。
+     */
+    static final class Histogram extends Metric {
+        private static final int BUCKETS = 256;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong sum = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+
+        Histogram(String name) {
+            super(name);
+        }
+
+        /**
+         * 结束 start() 开始的计时。
+         */
+        void stop(long startNanos) {
+            if (startNanos != 0L) {
+                record(System.nanoTime() - startNanos);
+            }
+        }
+
+        /**
+         * 记录一个已测得的耗时（纳秒），关闭时忽略。
+         */
+        void record(long nanos) {
+            if (!enabled) return;
+            if (nanos < 0) nanos = 0;
+            buckets.incrementAndGet(bucket(nanos));
+            count.incrementAndGet();
+            sum.addAndGet(nanos);
+            long current;
+            while (nanos > (current = max.get()) && !max.compareAndSet(current, nanos)) {
+                // 重试直到记录到更大的值
+            }
+        }
+
+        static int bucket(long v) {
+            if (v < 4) return (int) v;
+            int exp = 63 - Long.numberOfLeadingZeros(v);
+            int sub = (int) ((v >>> (exp - 2)) & 3);
+            return (exp - 1) * 4 + sub;
+        }
+
+        static long bucketUpperBound(int b) {
+            if (b < 3) return b;
+            if (b >= 247) return Long.MAX_VALUE;
+            int next = b + 1;
+            int exp = next / 4 + 1;
+            long lower = (long) (4 + next % 4) << (exp - 2);
+            return lower - 1;
+        }
+
+        /**
+         * 第 p 分位（0..1）的估计值（纳秒），没有样本时返回 0。
+         */
+        long percentile(double p) {
+            long total = 0;
+            long[] snapshot = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) {
+                snapshot[i] = buckets.get(i);
+                total += snapshot[i];
+            }
+            if (total == 0) return 0;
+            long rank = Math.max(1, (long) Math.ceil(p * total));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += snapshot[i];
+                if (seen >= rank) {
+                    return Math.min(bucketUpperBound(i), max.get());
+                }
+            }
+            return max.get();
+        }
+
+        long count() {
+            return count.get();
+        }
+
+        @Override
+        long value() {
+            return count.get();
+        }
+
+        @Override
+        void reset() {
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets.set(i, 0);
+            }
+            count.set(0);
+            sum.set(0);
+            max.set(0);
+        }
+
+        void appendTo(StringBuilder sb) {
+            long n = count.get();
+            double mean = n > 0 ? sum.get() / (double) n : 0;
+            sb.append(String.format(Locale.US, "%-24s %8d %10.3f %10.3f %10.3f %10.3f %10.3f%n", name, n,
+                    mean / 1e6, percentile(0.5) / 1e6, percentile(0.9) / 1e6, percentile(0.99) / 1e6,
+                    max.get() / 1e6));
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.vaultai.app;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 把旧格式（legacy/v2/v3/v4）条目重新加密为 v5 拆分存储的迁移流水线。
+ *
+ * 条目按 key 排序后分批处理：每批在多个线程间分片解密/加密，然后用一次提交写回，
+ * 并把这一批最后一个 key 持久化为检查点。进程中途被杀后再次运行会从检查点之后继续。
+ * 由于数据密钥在迁移完成前不会被重新包裹，已迁移和未迁移的条目在任意时刻都能用当前主密码解开。
+ * 解密失败的条目保持原样，并在结果中返回其 key，不会被静默丢弃。
+ */
+public class VaultMigrator {
+    private static final String STATE_PREFS_NAME = "VaultAIMigration";
+    private static final String CHECKPOINT_KEY = "checkpoint_key";
+    static final int BATCH_SIZE = 256;
+
+    public interface Listener {
+        /**
+         * 每提交一批后回调，运行在迁移线程上。
+         */
+        void onProgress(int done, int total, double entriesPerSecond);
+    }
+
+    public static final class Result {
+        public final int total;
+        public final int migrated;
+        public final List<String> failedKeys;
+        public final long elapsedMillis;
+
+        Result(int total, int migrated, List<String> failedKeys, long elapsedMillis) {
+            this.total = total;
+            this.migrated = migrated;
+            this.failedKeys = failedKeys;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public double entriesPerSecond() {
+            return elapsedMillis > 0 ? migrated * 1000.0 / elapsedMillis : migrated;
+        }
+    }
+
+    private final PasswordManager passwordManager;
+    private final VaultFile vaultFile;
+    private final SharedPreferences state;
+    private final int threads;
+
+    VaultMigrator(Context context, PasswordManager passwordManager, VaultFile vaultFile) {
+        this.passwordManager = passwordManager;
+        this.vaultFile = vaultFile;
+        this.state = context.getSharedPreferences(STATE_PREFS_NAME, Context.MODE_PRIVATE);
+        this.threads = Math.max(1, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * 是否有上次未完成的迁移。
+     */
+    public boolean hasCheckpoint() {
+        return state.getString(CHECKPOINT_KEY, null) != null;
+    }
+
+    public Result run(Listener listener) throws Exception {
+        long start = System.nanoTime();
+        List<String> allKeys = vaultFile.keys();
+        String checkpoint = state.getString(CHECKPOINT_KEY, null);
+        // 检查点之后的 key；追加 \u0000 使区间从检查点的下一个 key 开始
+        List<String> keys = checkpoint != null ? vaultFile.keysInRange(checkpoint + '\u0000', null) : allKeys;
+        int total = allKeys.size();
+        int done = total - keys.size();
+        int migrated = 0;
+        List<String> failedKeys = new ArrayList<>();
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            for (int from = 0; from < keys.size(); from += BATCH_SIZE) {
+                List<String> batch = keys.subList(from, Math.min(keys.size(), from + BATCH_SIZE));
+                byte[][] originals = new byte[batch.size()][];
+                byte[][] upgraded = new byte[batch.size()][];
+                runShards(pool, batch, originals, upgraded);
+
+                // 持有文件锁完成“比较后写回”，避免覆盖迁移期间用户刚保存的条目
+                synchronized (vaultFile) {
+                    VaultFile.Editor editor = vaultFile.edit();
+                    for (int i = 0; i < batch.size(); i++) {
+                        if (originals[i] == null) continue;
+                        if (upgraded[i] == null) {
+                            failedKeys.add(batch.get(i));
+                        } else if (Arrays.equals(originals[i], vaultFile.get(batch.get(i)))) {
+                            editor.put(batch.get(i), upgraded[i]);
+                            migrated++;
+                        }
+                    }
+                    editor.commit();
+                }
+                state.edit().putString(CHECKPOINT_KEY, batch.get(batch.size() - 1)).commit();
+
+                done += batch.size();
+                if (listener != null) {
+                    double seconds = (System.nanoTime() - start) / 1e9;
+                    listener.onProgress(done, total, seconds > 0 ? migrated / seconds : 0);
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+        state.edit().remove(CHECKPOINT_KEY).commit();
+        long elapsedMillis = (System.nanoTime() - start) / 1000000L;
+        return new Result(total, migrated, Collections.unmodifiableList(failedKeys), elapsedMillis);
+    }
+
+    /**
+     * 把一批 key 均分给各线程。originals[i] 为 null 表示条目不存在或已是 v5，无需处理；
+     * upgraded[i] 为 null 而 originals[i] 不为 null 表示解密失败。
+     */
+    private void runShards(ExecutorService pool, List<String> batch,
+                           byte[][] originals, byte[][] upgraded) throws Exception {
+        int shardSize = (batch.size() + threads - 1) / threads;
+        List<Callable<Void>> shards = new ArrayList<>(threads);
+        for (int s = 0; s < batch.size(); s += shardSize) {
+            final int shardFrom = s;
+            final int shardTo = Math.min(batch.size(), s + shardSize);
+            shards.add(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    for (int i = shardFrom; i < shardTo; i++) {
+                        byte[] stored = vaultFile.get(batch.get(i));
+                        if (stored == null || !passwordManager.needsMigration(stored)) continue;
+                        originals[i] = stored;
+                        try {
+                            upgraded[i] = passwordManager.reencryptRecord(stored);
+                        } catch (Exception e) {
+                            e.printStackTrace();
+                        }
+                    }
+                    return null;
+                }
+            });
+        }
+        for (Future<Void> f : pool.invokeAll(shards)) {
+            f.get();
+        }
+    }
+}
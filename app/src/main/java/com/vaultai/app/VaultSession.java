@@ -0,0 +1,188 @@
+package com.vaultai.app;
+
+import android.content.Context;
+
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 进程内唯一的密码库会话，由 VaultAIApp 持有。
+ *
+ * 会话拥有唯一的 PasswordManager（其中缓存解锁后的 KEK、数据密钥和派生密钥）和已解密的列表模型（VaultListState）。
+ * 各界面通过 VaultAIApp.session(context) 共用，不再各自创建实例或通过 Intent 传递主密码。
+ * 会话本身不保存主密码；旧格式记录和导出文件仍需逐盐派生，由 PasswordManager 以 char[] 保存并在锁定时清零。
+ * Activity 重建（切换主题）不影响会话，缓存得以保留；lock() 或空闲超时会清空全部密钥。
+ *
+ * touch() 只更新一个时间戳，开销可以忽略，适合在每次用户交互时调用；
+ * 超时检查由一个后台定时任务完成，未到期时按剩余时间重新调度。
+ */
+public class VaultSession {
+    static final long DEFAULT_TIMEOUT_MILLIS = 5 * 60 * 1000L;
+
+    /**
+     * 会话被锁定时回调，可能在任意线程上调用。
+     */
+    public interface Listener {
+        void onLocked();
+    }
+
+    private final Context appContext;
+    private final CopyOnWriteArraySet<Listener> listeners = new CopyOnWriteArraySet<>();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "vault-session-timeout");
+            t.setDaemon(true);
+            return t;
+        }
+    });
+    private PasswordManager passwordManager;
+    private VaultListState listState;
+    private volatile boolean unlocked;
+    private volatile long lastActiveNanos;
+    private volatile long timeoutMillis = DEFAULT_TIMEOUT_MILLIS;
+    private ScheduledFuture<?> timeoutCheck;
+
+    public VaultSession(Context context) {
+        this.appContext = context.getApplicationContext();
+    }
+
+    /**
+     * 返回会话的 PasswordManager，首次调用时打开密码库文件并加载索引。
+     */
+    public synchronized PasswordManager getPasswordManager() {
+        if (passwordManager == null) {
+            passwordManager = new PasswordManager(appContext);
+        }
+        return passwordManager;
+    }
+
+    /**
+     * 验证主密码并解锁会话，主密码错误时返回 false。
+     */
+    public boolean unlock(String password) {
+        PasswordManager pm = getPasswordManager();
+        if (!pm.unlock(password)) {
+            return false;
+        }
+        synchronized (this) {
+            unlocked = true;
+            touch();
+            scheduleTimeoutCheck(timeoutMillis);
+        }
+        return true;
+    }
+
+    /**
+     * 本次解锁范围内的列表模型，锁定后重新创建。
+     */
+    public synchronized VaultListState getListState() {
+        if (listState == null) {
+            listState = new VaultListState();
+        }
+        return listState;
+    }
+
+    public boolean isUnlocked() {
+        return unlocked;
+    }
+
+    /**
+     * 修改主密码，成功后会话使用新主密码。
+     */
+    public boolean changeMasterPassword(String oldPassword, String newPassword, VaultMigrator.Listener listener) {
+        return getPasswordManager().changeMasterPassword(oldPassword, newPassword, listener);
+    }
+
+    /**
+     * 锁定会话：丢弃所有缓存的密钥和列表模型，并通知监听者。
+     */
+    public void lock() {
+        boolean wasUnlocked;
+        synchronized (this) {
+            wasUnlocked = unlocked;
+            unlocked = false;
+            if (timeoutCheck != null) {
+                timeoutCheck.cancel(false);
+                timeoutCheck = null;
+            }
+            if (passwordManager != null) {
+                passwordManager.lock();
+            }
+            if (listState != null) {
+                listState.discard();
+                listState = null;
+            }
+        }
+        if (wasUnlocked) {
+            for (Listener listener : listeners) {
+                listener.onLocked();
+            }
+        }
+    }
+
+    /**
+     * 记录一次用户活动，推迟空闲超时。
+     */
+    public void touch() {
+        lastActiveNanos = System.nanoTime();
+    }
+
+    public void setTimeoutMillis(long millis) {
+        synchronized (this) {
+            timeoutMillis = millis;
+            if (isUnlocked()) {
+                scheduleTimeoutCheck(millis);
+            }
+        }
+    }
+
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    // Activity 生命周期回调，由 VaultAIApp 注册
+
+    void onActivityResumed() {
+        touch();
+    }
+
+    void onActivityPaused() {
+        touch();
+    }
+
+    private synchronized void scheduleTimeoutCheck(long delayMillis) {
+        if (timeoutCheck != null) {
+            timeoutCheck.cancel(false);
+        }
+        timeoutCheck = timer.schedule(new Runnable() {
+            @Override
+            public void run() {
+                checkTimeout();
+            }
+        }, Math.max(0, delayMillis), TimeUnit.MILLISECONDS);
+    }
+
+    private void checkTimeout() {
+        if (!isUnlocked()) return;
+        long idleMillis = (System.nanoTime() - lastActiveNanos) / 1000000L;
+        long remaining = timeoutMillis - idleMillis;
+        if (remaining <= 0) {
+            lock();
+        } else {
+            scheduleTimeoutCheck(remaining);
+        }
+    }
+}
@@ -0,0 +1,323 @@
+package com.vaultai.app;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 结构化事件日志，保存在内存映射的固定大小环形文件中，进程被杀死或崩溃后仍然保留，decode() 把它渲染成文本附在问题反馈里。
+ *
+ * 文件布局：HEADER_BYTES 字节的文件头；EVENT_CAPACITY 条 EVENT_BYTES 字节的定长事件；
+ * CRASH_SLOTS 个 CRASH_BYTES 字节的崩溃槽，保存最近几次崩溃的调用栈文本；
+ * STALL_SLOTS 个 STALL_BYTES 字节的卡顿槽，保存 MainThreadWatchdog 最近几次卡顿的采样文本。
+ * 事件按全局序号写入第 序号 % EVENT_CAPACITY 条，覆盖最旧的事件。log() 只做几次绝对位置的 put，
+ * 不分配对象，也不做系统调用；脏页由内核写回文件，进程退出不影响。
+ * 每条事件先把序号字段清零，写完其余字段后再写入序号，写到一半中断的事件在解码时被跳过。
+ *
+ * 由 VaultAIApp 调用 open()；未打开时（如基准测试中）log() 直接返回。
+ */
+public final class VaultTrace {
+    private static final String TAG = "VaultTrace";
+
+    // 事件类型，参数含义见 describe()
+    static final int APP_START = 1;
+    static final int UNLOCK = 2;
+    static final int LIST_LOAD = 3;
+    static final int EXPORT = 4;
+    static final int IMPORT = 5;
+    static final int DECRYPT_FAILURE = 6;
+    static final int STALL = 7;
+    static final int CRASH = 8;
+
+    private static final int MAGIC = 0x56415452; // "VATR"
+    private static final int VERSION = 2;
+    static final int HEADER_BYTES = 64;
+    static final int EVENT_BYTES = 40;
+    static final int EVENT_CAPACITY = 4096;
+    static final int CRASH_SLOTS = 4;
+    static final int CRASH_BYTES = 8192;
+    static final int STALL_SLOTS = 8;
+    static final int STALL_BYTES = 8192;
+    // 崩溃槽和卡顿槽共用的槽头：序号 + 1、时间、正文长度
+    private static final int TEXT_HEADER_BYTES = 20;
+    private static final int EVENTS_OFFSET = HEADER_BYTES;
+    private static final int CRASHES_OFFSET = EVENTS_OFFSET + EVENT_CAPACITY * EVENT_BYTES;
+    private static final int STALLS_OFFSET = CRASHES_OFFSET + CRASH_SLOTS * CRASH_BYTES;
+    static final int FILE_BYTES = STALLS_OFFSET + STALL_SLOTS * STALL_BYTES;
+
+    private static volatile MappedByteBuffer buffer;
+    private static final AtomicLong nextSeq = new AtomicLong();
+    private static final AtomicLong nextCrashSeq = new AtomicLong();
+    private static final AtomicLong nextStallSeq = new AtomicLong();
+
+    private VaultTrace() {
+    }
+
+    /**
+     * 映射 trace 文件，文件不存在或布局不符时重新初始化。失败时记录警告，之后的 log() 不做任何事。
+     */
+    public static synchronized void open(File file) {
+        if (buffer != null) return;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            boolean fresh = raf.length() != FILE_BYTES;
+            if (fresh) {
+                raf.setLength(0);
+                raf.setLength(FILE_BYTES);
+            }
+            // 关闭文件后映射仍然有效
+            MappedByteBuffer buf = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, FILE_BYTES);
+            if (fresh || !hasValidHeader(buf)) {
+                for (int i = 0; i < FILE_BYTES; i += 8) {
+                    buf.putLong(i, 0);
+                }
+                buf.putInt(0, MAGIC);
+                buf.putInt(4, VERSION);
+                buf.putInt(8, EVENT_BYTES);
+                buf.putInt(12, EVENT_CAPACITY);
+                buf.putInt(16, CRASH_SLOTS);
+                buf.putInt(20, CRASH_BYTES);
+                buf.putInt(24, STALL_SLOTS);
+                buf.putInt(28, STALL_BYTES);
+            }
+            long maxEvent = 0;
+            for (int i = 0; i < EVENT_CAPACITY; i++) {
+                maxEvent = Math.max(maxEvent, buf.getLong(EVENTS_OFFSET + i * EVENT_BYTES));
+            }
+            // 文件中保存的是 序号 + 1，0 表示空
+            nextSeq.set(maxEvent);
+            nextCrashSeq.set(maxTextSeq(buf, CRASHES_OFFSET, CRASH_SLOTS, CRASH_BYTES));
+            nextStallSeq.set(maxTextSeq(buf, STALLS_OFFSET, STALL_SLOTS, STALL_BYTES));
+            buffer = buf;
+        } catch (IOException e) {
+            Log.w(TAG, "打开 trace 文件失败", e);
+        }
+    }
+
+    private static boolean hasValidHeader(ByteBuffer buf) {
+        return buf.getInt(0) == MAGIC && buf.getInt(4) == VERSION && buf.getInt(8) == EVENT_BYTES
+                && buf.getInt(12) == EVENT_CAPACITY && buf.getInt(16) == CRASH_SLOTS && buf.getInt(20) == CRASH_BYTES
+                && buf.getInt(24) == STALL_SLOTS && buf.getInt(28) == STALL_BYTES;
+    }
+
+    private static long maxTextSeq(ByteBuffer buf, int sectionOffset, int slots, int slotBytes) {
+        long max = 0;
+        for (int i = 0; i < slots; i++) {
+            max = Math.max(max, buf.getLong(sectionOffset + i * slotBytes));
+        }
+        return max;
+    }
+
+    /**
+     * 记录一条事件，可在任意线程上调用，不分配对象。
+     */
+    static void log(int type, long a, long b, int c) {
+        MappedByteBuffer buf = buffer;
+        if (buf == null) return;
+        long seq = nextSeq.getAndIncrement();
+        int offset = EVENTS_OFFSET + (int) (seq % EVENT_CAPACITY) * EVENT_BYTES;
+        buf.putLong(offset, 0);
+        buf.putLong(offset + 8, System.currentTimeMillis());
+        buf.putInt(offset + 16, type);
+        buf.putInt(offset + 20, c);
+        buf.putLong(offset + 24, a);
+        buf.putLong(offset + 32, b);
+        buf.putLong(offset, seq + 1);
+    }
+
+    /**
+     * 保存一次崩溃的文本（通常是调用栈），超出槽大小的部分被截断，并记录一条 CRASH 事件。
+     * 在崩溃的线程上调用，只写内存映射，不打开文件。
+     */
+    static void recordCrash(long wallMillis, String text) {
+        MappedByteBuffer buf = buffer;
+        if (buf == null) return;
+        long seq = nextCrashSeq.getAndIncrement();
+        int slot = (int) (seq % CRASH_SLOTS);
+        writeText(buf, CRASHES_OFFSET + slot * CRASH_BYTES, CRASH_BYTES, seq, wallMillis, text);
+        log(CRASH, seq, 0, slot);
+        // 进程即将退出，页面缓存本身就会保留，这里再同步一次以防设备随后断电
+        buf.force();
+    }
+
+    /**
+     * 保存一次主线程卡顿的采样文本，超出槽大小的部分被截断。seq 小于 0 时分配新的槽，
+     * 否则覆盖同一次卡顿之前写入的槽（先在疑似 ANR 时写一次，卡顿结束后写最终结果）。
+     * 返回写入的序号；未打开时返回 -1。
+     */
+    static long recordStall(long seq, long wallMillis, String text) {
+        MappedByteBuffer buf = buffer;
+        if (buf == null) return -1;
+        if (seq < 0) {
+            seq = nextStallSeq.getAndIncrement();
+        }
+        writeText(buf, STALLS_OFFSET + (int) (seq % STALL_SLOTS) * STALL_BYTES, STALL_BYTES, seq, wallMillis, text);
+        return seq;
+    }
+
+    /**
+     * 清空卡顿槽，事件和崩溃记录保留。
+     */
+    static void clearStalls() {
+        MappedByteBuffer buf = buffer;
+        if (buf == null) return;
+        for (int i = 0; i < STALL_SLOTS; i++) {
+            buf.putLong(STALLS_OFFSET + i * STALL_BYTES, 0);
+        }
+    }
+
+    // 先把序号清零，写完时间、长度和正文后再写入序号，写到一半中断的槽在解码时被跳过
+    private static void writeText(MappedByteBuffer buf, int offset, int slotBytes, long seq, long wallMillis, String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(bytes.length, slotBytes - TEXT_HEADER_BYTES);
+        buf.putLong(offset, 0);
+        buf.putLong(offset + 8, wallMillis);
+        buf.putInt(offset + 16, length);
+        for (int i = 0; i < length; i++) {
+            buf.put(offset + TEXT_HEADER_BYTES + i, bytes[i]);
+        }
+        buf.putLong(offset, seq + 1);
+    }
+
+    /**
+     * 记录格式名，用于 DECRYPT_FAILURE 事件的参数。
+     */
+    static String formatName(int format) {
+        switch (format) {
+            case 5: return "v5";
+            case 4: return "v4";
+            case 3: return "v3";
+            case 2: return "v2";
+            case 1: return "legacy";
+            default: return "empty";
+        }
+    }
+
+    static String describe(int type, long a, long b, int c) {
+        switch (type) {
+            case APP_START: return "app start, pid " + a + ", API " + b;
+            case UNLOCK: return "unlock " + (c != 0 ? "ok" : "failed") + ", " + a + " ms";
+            case LIST_LOAD: return "list load, " + b + " entries, " + c + " failed, " + a + " ms";
+            case EXPORT: return "export, " + b + " written, " + c + " failed, " + a + " ms";
+            case IMPORT: return c < 0 ? "import aborted, " + a + " ms" : "import, " + b + " saved, " + c + " failed, " + a + " ms";
+            case DECRYPT_FAILURE: return "decrypt failed, format " + formatName(c);
+            case STALL: return "main thread stall " + a + " ms" + (c != 0 ? " (ANR)" : "");
+            case CRASH: return "crash #" + a;
+            default: return "type " + type + " a=" + a + " b=" + b + " c=" + c;
+        }
+    }
+
+    /**
+     * 把 trace 文件渲染成文本：按格式统计的解密失败、最近 maxEvents 条事件（0 表示全部）和保存的崩溃。
+     * 只读取文件，也可以用于从设备上取出的文件。
+     */
+    public static String decode(File file, int maxEvents) {
+        StringBuilder sb = new StringBuilder();
+        byte[] data;
+        try {
+            data = readFile(file);
+        } catch (IOException e) {
+            return sb.append("trace: ").append(e.getMessage()).append('\n').toString();
+        }
+        if (data == null) {
+            return sb.append("trace: missing or unknown layout\n").toString();
+        }
+        ByteBuffer buf = ByteBuffer.wrap(data);
+        List<long[]> events = new ArrayList<>();
+        for (int i = 0; i < EVENT_CAPACITY; i++) {
+            int offset = EVENTS_OFFSET + i * EVENT_BYTES;
+            long stored = buf.getLong(offset);
+            if (stored == 0 || (stored - 1) % EVENT_CAPACITY != i) continue;
+            events.add(new long[]{stored - 1, buf.getLong(offset + 8), buf.getInt(offset + 16),
+                    buf.getLong(offset + 24), buf.getLong(offset + 32), buf.getInt(offset + 20)});
+        }
+        Collections.sort(events, (x, y) -> Long.compare(x[0], y[0]));
+
+        int[] failures = new int[6];
+        for (long[] e : events) {
+            if (e[2] == DECRYPT_FAILURE && e[5] >= 0 && e[5] < failures.length) {
+                failures[(int) e[5]]++;
+            }
+        }
+        SimpleDateFormat time = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS", Locale.US);
+        sb.append("trace: ").append(events.size()).append(" events\n");
+        sb.append("decrypt failures by format:");
+        for (int f = failures.length - 1; f >= 0; f--) {
+            sb.append(' ').append(formatName(f)).append('=').append(failures[f]);
+        }
+        sb.append('\n');
+        int from = maxEvents > 0 ? Math.max(0, events.size() - maxEvents) : 0;
+        for (int i = from; i < events.size(); i++) {
+            long[] e = events.get(i);
+            sb.append(time.format(new Date(e[1]))).append("  #").append(e[0]).append("  ")
+                    .append(describe((int) e[2], e[3], e[4], (int) e[5])).append('\n');
+        }
+
+        for (long[] c : textSlots(buf, CRASHES_OFFSET, CRASH_SLOTS, CRASH_BYTES)) {
+            sb.append("\ncrash #").append(c[0]).append(" at ").append(time.format(new Date(c[1]))).append('\n')
+                    .append(new String(data, (int) c[2] + TEXT_HEADER_BYTES, (int) c[3], StandardCharsets.UTF_8))
+                    .append('\n');
+        }
+        for (long[] c : textSlots(buf, STALLS_OFFSET, STALL_SLOTS, STALL_BYTES)) {
+            sb.append("\nstall #").append(c[0]).append('\n')
+                    .append(new String(data, (int) c[2] + TEXT_HEADER_BYTES, (int) c[3], StandardCharsets.UTF_8));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 按序号从旧到新读出文件中保存的卡顿采样文本，文件不存在或布局不符时返回空列表。
+     */
+    static List<String> readStalls(File file) {
+        List<String> stalls = new ArrayList<>();
+        byte[] data;
+        try {
+            data = readFile(file);
+        } catch (IOException e) {
+            Log.w(TAG, "读取 trace 文件失败", e);
+            return stalls;
+        }
+        if (data == null) return stalls;
+        for (long[] c : textSlots(ByteBuffer.wrap(data), STALLS_OFFSET, STALL_SLOTS, STALL_BYTES)) {
+            stalls.add(new String(data, (int) c[2] + TEXT_HEADER_BYTES, (int) c[3], StandardCharsets.UTF_8));
+        }
+        return stalls;
+    }
+
+    // 整个文件的内容，文件不存在或布局不符时返回 null
+    private static byte[] readFile(File file) throws IOException {
+        if (!file.exists()) return null;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            if (raf.length() != FILE_BYTES) return null;
+            byte[] data = new byte[FILE_BYTES];
+            raf.readFully(data);
+            return hasValidHeader(ByteBuffer.wrap(data)) ? data : null;
+        }
+    }
+
+    // 一段文本槽中的有效记录，按序号排序：{序号, 时间, 槽偏移, 正文长度}
+    private static List<long[]> textSlots(ByteBuffer buf, int sectionOffset, int slots, int slotBytes) {
+        List<long[]> records = new ArrayList<>();
+        for (int i = 0; i < slots; i++) {
+            int offset = sectionOffset + i * slotBytes;
+            long stored = buf.getLong(offset);
+            int length = buf.getInt(offset + 16);
+            if (stored == 0 || (stored - 1) % slots != i || length < 0 || length > slotBytes - TEXT_HEADER_BYTES) continue;
+            records.add(new long[]{stored - 1, buf.getLong(offset + 8), offset, length});
+        }
+        Collections.sort(records, (x, y) -> Long.compare(x[0], y[0]));
+        return records;
+    }
+}
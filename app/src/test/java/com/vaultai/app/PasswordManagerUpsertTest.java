@@ -0,0 +1,132 @@
+package com.vaultai.app;
+
+import static org.junit.Assert.*;
+
+import android.app.Application;
+import android.content.Context;
+import android.content.ContextWrapper;
+
+import java.io.File;
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+/**
+ * upsertAll 的冲突处理：SKIP_EXISTING 保留已有条目，OVERWRITE 替换；同一批中的重复和旧版只按网站名保存的 key 都算已存在。
+ *
+ * 用 Robolectric 提供 SharedPreferences 和 Base64；每个用例的密码库文件放在新的临时目录中。
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(application = Application.class)
+public class PasswordManagerUpsertTest {
+    private static final String MASTER_PASSWORD = "correct horse battery staple";
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private Context context;
+    private PasswordManager pm;
+
+    @Before
+    public void setUp() throws Exception {
+        final File filesDir = tmp.newFolder();
+        context = new ContextWrapper(RuntimeEnvironment.getApplication()) {
+            @Override
+            public Context getApplicationContext() {
+                return this;
+            }
+
+            @Override
+            public File getFilesDir() {
+                return filesDir;
+            }
+        };
+        pm = new PasswordManager(context);
+        assertTrue(pm.unlock(MASTER_PASSWORD));
+    }
+
+    @Test
+    public void skipExistingKeepsStoredEntry() throws Exception {
+        pm.upsertAll(Arrays.asList(entry("a.com", "old")), PasswordManager.ConflictPolicy.OVERWRITE);
+
+        PasswordManager.UpsertResult r = pm.upsertAll(Arrays.asList(
+                entry("a.com", "new"),
+                entry("b.com", "pw"),
+                new PasswordEntry("c.com", "user", "")), PasswordManager.ConflictPolicy.SKIP_EXISTING);
+
+        assertEquals(1, r.inserted);
+        assertEquals(0, r.overwritten);
+        assertEquals(1, r.skipped);
+        assertEquals(1, r.invalid);
+        assertEquals("old", password("a.com"));
+        assertEquals("pw", password("b.com"));
+        assertFalse(pm.containsEntry("c.com", "user"));
+    }
+
+    @Test
+    public void overwriteReplacesStoredEntry() throws Exception {
+        pm.upsertAll(Arrays.asList(entry("a.com", "old")), PasswordManager.ConflictPolicy.OVERWRITE);
+
+        PasswordManager.UpsertResult r = pm.upsertAll(Arrays.asList(entry("a.com", "new"), entry("b.com", "pw")),
+                PasswordManager.ConflictPolicy.OVERWRITE);
+
+        assertEquals(1, r.inserted);
+        assertEquals(1, r.overwritten);
+        assertEquals(0, r.skipped);
+        assertEquals("new", password("a.com"));
+        assertEquals("pw", password("b.com"));
+    }
+
+    @Test
+    public void duplicateInBatchCountsAsExisting() throws Exception {
+        PasswordManager.UpsertResult skip = pm.upsertAll(Arrays.asList(entry("a.com", "1"), entry("a.com", "2")),
+                PasswordManager.ConflictPolicy.SKIP_EXISTING);
+        assertEquals(1, skip.inserted);
+        assertEquals(1, skip.skipped);
+        assertEquals("1", password("a.com"));
+
+        PasswordManager.UpsertResult overwrite = pm.upsertAll(Arrays.asList(entry("b.com", "1"), entry("b.com", "2")),
+                PasswordManager.ConflictPolicy.OVERWRITE);
+        assertEquals(1, overwrite.inserted);
+        assertEquals(1, overwrite.overwritten);
+        assertEquals("2", password("b.com"));
+    }
+
+    @Test
+    public void legacySiteKeyCountsAsExisting() throws Exception {
+        // 旧版 prefs 中只按网站名保存的条目，新建 PasswordManager 时迁入密码库文件
+        String legacyKey = "password_legacy.com";
+        context.getSharedPreferences("VaultAIPasswords", Context.MODE_PRIVATE).edit()
+                .putString(legacyKey, pm.encryptData(entry("legacy.com", "old").toString()))
+                .commit();
+        pm = new PasswordManager(context);
+        assertTrue(pm.unlock(MASTER_PASSWORD));
+        assertTrue(pm.containsKey(legacyKey));
+
+        PasswordManager.UpsertResult skip = pm.upsertAll(Arrays.asList(entry("legacy.com", "new")),
+                PasswordManager.ConflictPolicy.SKIP_EXISTING);
+        assertEquals(1, skip.skipped);
+        assertTrue(pm.containsKey(legacyKey));
+
+        PasswordManager.UpsertResult overwrite = pm.upsertAll(Arrays.asList(entry("legacy.com", "new")),
+                PasswordManager.ConflictPolicy.OVERWRITE);
+        assertEquals(1, overwrite.overwritten);
+        assertFalse(pm.containsKey(legacyKey));
+        assertEquals("new", password("legacy.com"));
+    }
+
+    private static PasswordEntry entry(String site, String password) {
+        return new PasswordEntry(site, "user", password, "");
+    }
+
+    private String password(String site) throws Exception {
+        return pm.readEntry(pm.buildKey(site, "user")).getPassword();
+    }
+}
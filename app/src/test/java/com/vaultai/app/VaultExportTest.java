@@ -0,0 +1,143 @@
+package com.vaultai.app;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.crypto.spec.SecretKeySpec;
+
+import org.junit.Test;
+
+/**
+ * 流式导出的认证：内容、文件头被篡改，帧被重排，或文件被截断时，读取都以 IOException 失败。
+ */
+public class VaultExportTest {
+    private static final SecretKeySpec KEY = new SecretKeySpec(new byte[16], "AES");
+    // 一个非最后帧的长度：标记 + 长度 + iv + 满帧密文 + tag
+    private static final int FULL_CHUNK_BYTES = 1 + 4 + 12 + VaultExport.CHUNK_SIZE + 16;
+
+    @Test
+    public void roundTripAcrossChunks() throws Exception {
+        List<PasswordEntry> entries = entries(400);
+        byte[] data = export(entries);
+        assertTrue(data.length > VaultExport.HEADER_LENGTH + 2 * FULL_CHUNK_BYTES);
+
+        List<PasswordEntry> read = readAll(data);
+        assertEquals(entries.size(), read.size());
+        for (int i = 0; i < entries.size(); i++) {
+            assertEquals(entries.get(i).getSiteName(), read.get(i).getSiteName());
+            assertEquals(entries.get(i).getUsername(), read.get(i).getUsername());
+            assertEquals(entries.get(i).getPassword(), read.get(i).getPassword());
+            assertEquals(entries.get(i).getNote(), read.get(i).getNote());
+        }
+    }
+
+    @Test
+    public void emptyExportRoundTrips() throws Exception {
+        assertTrue(readAll(export(new ArrayList<PasswordEntry>())).isEmpty());
+    }
+
+    @Test
+    public void flippedCiphertextByteIsRejected() throws Exception {
+        byte[] data = export(entries(400));
+        for (int offset : new int[]{VaultExport.HEADER_LENGTH + 40, data.length / 2, data.length - 1}) {
+            byte[] tampered = data.clone();
+            tampered[offset] ^= 0x01;
+            assertThrows(IOException.class, () -> readAll(tampered));
+        }
+    }
+
+    @Test
+    public void tamperedHeaderIsRejected() throws Exception {
+        byte[] data = export(entries(3));
+        // 盐在认证数据中，改动它会让第一帧认证失败
+        data[VaultExport.HEADER_LENGTH - 1] ^= 0x01;
+        assertThrows(IOException.class, () -> readAll(data));
+    }
+
+    @Test
+    public void reorderedChunksAreRejected() throws Exception {
+        byte[] data = export(entries(400));
+        byte[] swapped = data.clone();
+        int first = VaultExport.HEADER_LENGTH;
+        int second = first + FULL_CHUNK_BYTES;
+        System.arraycopy(data, second, swapped, first, FULL_CHUNK_BYTES);
+        System.arraycopy(data, first, swapped, second, FULL_CHUNK_BYTES);
+        assertThrows(IOException.class, () -> readAll(swapped));
+    }
+
+    @Test
+    public void truncatedExportIsRejected() throws Exception {
+        byte[] data = export(entries(400));
+        int[] lengths = {
+                VaultExport.HEADER_LENGTH,
+                VaultExport.HEADER_LENGTH + 3,
+                VaultExport.HEADER_LENGTH + FULL_CHUNK_BYTES,
+                VaultExport.HEADER_LENGTH + 2 * FULL_CHUNK_BYTES,
+                data.length / 2,
+                data.length - 1,
+        };
+        for (int length : lengths) {
+            byte[] truncated = Arrays.copyOf(data, length);
+            assertThrows("length " + length, IOException.class, () -> readAll(truncated));
+        }
+    }
+
+    @Test
+    public void trailingDataIsRejected() throws Exception {
+        byte[] data = export(entries(3));
+        byte[] extended = Arrays.copyOf(data, data.length + 1);
+        assertThrows(IOException.class, () -> readAll(extended));
+    }
+
+    @Test
+    public void unclosedWriterIsTruncated() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        VaultExport.Writer writer = new VaultExport.Writer(out, KEY, new byte[VaultExport.SALT_LENGTH]);
+        for (PasswordEntry entry : entries(400)) {
+            writer.write(entry);
+        }
+        assertThrows(IOException.class, () -> readAll(out.toByteArray()));
+    }
+
+    private static List<PasswordEntry> entries(int count) {
+        char[] note = new char[400];
+        Arrays.fill(note, 'n');
+        List<PasswordEntry> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            entries.add(new PasswordEntry("site" + i + ".com", "user" + i, "pw" + i, new String(note)));
+        }
+        return entries;
+    }
+
+    private static byte[] export(List<PasswordEntry> entries) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        VaultExport.Writer writer = new VaultExport.Writer(out, KEY, new byte[VaultExport.SALT_LENGTH]);
+        for (PasswordEntry entry : entries) {
+            writer.write(entry);
+        }
+        writer.close();
+        return out.toByteArray();
+    }
+
+    private static List<PasswordEntry> readAll(byte[] data) throws IOException {
+        InputStream in = new ByteArrayInputStream(data);
+        VaultExport.Reader reader = new VaultExport.Reader(in, VaultExport.readHeader(in), KEY);
+        List<PasswordEntry> entries = new ArrayList<>();
+        try {
+            PasswordEntry entry;
+            while ((entry = reader.next()) != null) {
+                entries.add(entry);
+            }
+        } finally {
+            reader.close();
+        }
+        return entries;
+    }
+}
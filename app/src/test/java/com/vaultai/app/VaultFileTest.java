@@ -0,0 +1,142 @@
+package com.vaultai.app;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * 打开密码库文件时的崩溃尾部恢复：只应用以 COMMIT 结尾的完整批次，残缺或校验失败的尾部被截断。
+ *
+ * VaultFile.open 按路径缓存实例，所以每次"重启"都把文件字节复制到新目录再打开。
+ */
+public class VaultFileTest {
+    // 一条 COMMIT 记录：op + keyLen + valueLen + crc
+    private static final int COMMIT_RECORD_BYTES = 1 + 4 + 4 + 4;
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void committedBatchesSurviveReopen() throws Exception {
+        File file = newVault();
+        VaultFile vault = VaultFile.open(file);
+        vault.edit().put("a", bytes("1")).put("b", bytes("2")).commit();
+        vault.edit().remove("a").commit();
+
+        VaultFile reopened = reopen(Files.readAllBytes(file.toPath()));
+        assertNull(reopened.get("a"));
+        assertEquals("2", string(reopened.get("b")));
+    }
+
+    @Test
+    public void batchWithoutCommitRecordIsDiscarded() throws Exception {
+        File file = newVault();
+        VaultFile vault = VaultFile.open(file);
+        vault.edit().put("a", bytes("1")).commit();
+        long firstBatchEnd = file.length();
+        vault.edit().put("b", bytes("2")).put("c", bytes("3")).commit();
+        byte[] data = Files.readAllBytes(file.toPath());
+
+        // 进程在写最后一条 COMMIT 记录时被杀
+        File copy = copyOf(data, data.length - 1);
+        VaultFile reopened = VaultFile.open(copy);
+        assertEquals("1", string(reopened.get("a")));
+        assertNull(reopened.get("b"));
+        assertNull(reopened.get("c"));
+        assertEquals(firstBatchEnd, copy.length());
+    }
+
+    @Test
+    public void partialRecordHeaderIsDiscarded() throws Exception {
+        File file = newVault();
+        VaultFile vault = VaultFile.open(file);
+        vault.edit().put("a", bytes("1")).commit();
+        long firstBatchEnd = file.length();
+        vault.edit().put("b", bytes("2")).commit();
+        byte[] data = Files.readAllBytes(file.toPath());
+
+        File copy = copyOf(data, (int) firstBatchEnd + 5);
+        VaultFile reopened = VaultFile.open(copy);
+        assertEquals(Arrays.asList("a"), reopened.keys());
+        assertEquals(firstBatchEnd, copy.length());
+    }
+
+    @Test
+    public void corruptedRecordDropsItsBatch() throws Exception {
+        File file = newVault();
+        VaultFile vault = VaultFile.open(file);
+        vault.edit().put("a", bytes("1")).commit();
+        vault.edit().put("b", bytes("2")).commit();
+        byte[] data = Files.readAllBytes(file.toPath());
+
+        // b 的值在它的 crc 和 COMMIT 记录之前
+        data[data.length - COMMIT_RECORD_BYTES - 4 - 1] ^= 0x01;
+        VaultFile reopened = reopen(data);
+        assertEquals("1", string(reopened.get("a")));
+        assertNull(reopened.get("b"));
+    }
+
+    @Test
+    public void garbageAfterLastCommitIsTruncated() throws Exception {
+        File file = newVault();
+        VaultFile vault = VaultFile.open(file);
+        vault.edit().put("a", bytes("1")).commit();
+        byte[] data = Files.readAllBytes(file.toPath());
+        byte[] withGarbage = Arrays.copyOf(data, data.length + 64);
+        Arrays.fill(withGarbage, data.length, withGarbage.length, (byte) 0x7f);
+
+        File copy = copyOf(withGarbage, withGarbage.length);
+        VaultFile reopened = VaultFile.open(copy);
+        assertEquals("1", string(reopened.get("a")));
+        assertEquals(data.length, copy.length());
+    }
+
+    @Test
+    public void writesAfterRecoveryAreDurable() throws Exception {
+        File file = newVault();
+        VaultFile vault = VaultFile.open(file);
+        vault.edit().put("a", bytes("1")).commit();
+        vault.edit().put("b", bytes("2")).commit();
+        byte[] data = Files.readAllBytes(file.toPath());
+
+        File copy = copyOf(data, data.length - 1);
+        VaultFile recovered = VaultFile.open(copy);
+        recovered.edit().put("c", bytes("3")).commit();
+
+        VaultFile reopened = reopen(Files.readAllBytes(copy.toPath()));
+        assertEquals("1", string(reopened.get("a")));
+        assertNull(reopened.get("b"));
+        assertEquals("3", string(reopened.get("c")));
+    }
+
+    private File newVault() throws IOException {
+        return new File(tmp.newFolder(), "vault.dat");
+    }
+
+    private VaultFile reopen(byte[] data) throws IOException {
+        return VaultFile.open(copyOf(data, data.length));
+    }
+
+    // 新目录中只有 .dat，没有索引快照，打开时重放完整日志
+    private File copyOf(byte[] data, int length) throws IOException {
+        File copy = newVault();
+        Files.write(copy.toPath(), Arrays.copyOf(data, length));
+        return copy;
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(byte[] b) {
+        return b != null ? new String(b, StandardCharsets.UTF_8) : null;
+    }
+}
@@ -0,0 +1,83 @@
+package com.vaultai.app;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PasswordEntry 的编解码：二进制格式、v5 的元数据/机密两部分，以及旧版记录使用的文本格式。
+ * 不涉及加密。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EntryCodecBenchmark {
+    @Param({"0", "256", "4096"})
+    public int noteLength;
+
+    private PasswordEntry entry;
+    private byte[] binary;
+    private byte[] metadata;
+    private byte[] secret;
+    private String displayText;
+
+    @Setup
+    public void setUp() {
+        entry = BenchData.entry(42, noteLength);
+        binary = entry.toBytes();
+        metadata = entry.metadataBytes();
+        secret = entry.secretBytes();
+        displayText = entry.toString();
+    }
+
+    @Benchmark
+    public byte[] encodeBinary() {
+        return entry.toBytes();
+    }
+
+    @Benchmark
+    public PasswordEntry decodeBinary() {
+        return PasswordEntry.fromBytes(binary);
+    }
+
+    @Benchmark
+    public void encodeParts(Blackhole bh) {
+        bh.consume(entry.metadataBytes());
+        bh.consume(entry.secretBytes());
+    }
+
+    @Benchmark
+    public PasswordEntry decodeParts() {
+        return PasswordEntry.fromParts(EntryMetadata.fromBuffer(ByteBuffer.wrap(metadata)), ByteBuffer.wrap(secret));
+    }
+
+    @Benchmark
+    public EntryMetadata decodeMetadataOnly() {
+        return EntryMetadata.fromBuffer(ByteBuffer.wrap(metadata));
+    }
+
+    @Benchmark
+    public String encodeDisplayText() {
+        return entry.toString();
+    }
+
+    @Benchmark
+    public PasswordEntry decodeDisplayText() {
+        return PasswordEntry.fromDisplayText(displayText);
+    }
+}
@@ -0,0 +1,64 @@
+package com.vaultai.app;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PBKDF2 派生（120000 次迭代）主导的操作：解锁和修改主密码。每次调用都会派生，单次耗时在几十毫秒量级。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KeyDerivationBenchmark {
+    private static final String OTHER_PASSWORD = "another master password";
+
+    private JvmContext context;
+    private PasswordManager passwordManager;
+    private boolean swapped;
+
+    @Setup
+    public void setUp() throws Exception {
+        context = new JvmContext();
+        passwordManager = BenchData.newVault(context, 1, 0);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.delete();
+    }
+
+    /**
+     * 冷解锁：丢弃缓存的密钥后重新派生 KEK、比对校验值并解开数据密钥。
+     */
+    @Benchmark
+    public boolean unlock() {
+        passwordManager.lock();
+        return passwordManager.unlock(BenchData.MASTER_PASSWORD);
+    }
+
+    /**
+     * 修改主密码（在两个密码之间来回切换）：验证旧密码并为新密码派生 KEK，共两次派生。
+     * 所有条目已是 v5，不需要重新加密条目。
+     */
+    @Benchmark
+    public boolean changeMasterPassword() {
+        String from = swapped ? OTHER_PASSWORD : BenchData.MASTER_PASSWORD;
+        String to = swapped ? BenchData.MASTER_PASSWORD : OTHER_PASSWORD;
+        swapped = !swapped;
+        return passwordManager.changeMasterPassword(from, to, null);
+    }
+}
@@ -0,0 +1,99 @@
+package com.vaultai.app;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 把整库旧版 v3 记录重新加密为 v5（VaultMigrator），即早期 reEncryptAll 的工作量。
+ *
+ * 每次调用前都要重新准备一个全是 v3 记录的密码库，准备时间不计入结果，因此使用 SingleShotTime。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MigrationBenchmark {
+    private static final String PREFS_NAME = "VaultAIPasswords";
+    private static final String AUTH_PREFS_NAME = "VaultAIAuth";
+
+    @Param({"1000", "10000"})
+    public int vaultSize;
+
+    @Param({"64"})
+    public int noteLength;
+
+    private Map<String, ?> authTemplate;
+    private final List<String> keys = new ArrayList<>();
+    private final List<String> v3Records = new ArrayList<>();
+    private JvmContext context;
+    private PasswordManager passwordManager;
+
+    @Setup(Level.Trial)
+    public void prepareRecords() throws Exception {
+        JvmContext template = new JvmContext();
+        PasswordManager pm = BenchData.newVault(template, 0, noteLength);
+        for (PasswordEntry entry : BenchData.entries(vaultSize, noteLength)) {
+            keys.add(pm.buildKey(entry.getSiteName(), entry.getUsername()));
+            v3Records.add(pm.encryptData(entry.toString()));
+        }
+        authTemplate = template.getSharedPreferences(AUTH_PREFS_NAME, Context.MODE_PRIVATE).getAll();
+        template.delete();
+    }
+
+    /**
+     * 新建密码库：沿用模板的盐和数据密钥，旧版 prefs 中放入 v3 记录，由 PasswordManager 构造时原样迁入密码库文件。
+     */
+    @Setup(Level.Invocation)
+    public void prepareVault() throws Exception {
+        context = new JvmContext();
+        SharedPreferences.Editor auth = context.getSharedPreferences(AUTH_PREFS_NAME, Context.MODE_PRIVATE).edit();
+        for (Map.Entry<String, ?> e : authTemplate.entrySet()) {
+            auth.putString(e.getKey(), (String) e.getValue());
+        }
+        auth.commit();
+        SharedPreferences.Editor legacy = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).edit();
+        for (int i = 0; i < keys.size(); i++) {
+            legacy.putString(keys.get(i), v3Records.get(i));
+        }
+        legacy.commit();
+        passwordManager = new PasswordManager(context);
+        if (!passwordManager.unlock(BenchData.MASTER_PASSWORD)) {
+            throw new IllegalStateException("unlock failed");
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void deleteVault() {
+        context.delete();
+    }
+
+    @Benchmark
+    public VaultMigrator.Result migrateToV5() throws Exception {
+        VaultMigrator.Result result = passwordManager.migrateToDataKey(null);
+        if (result.migrated != vaultSize) {
+            throw new IllegalStateException("migrated " + result.migrated + " of " + vaultSize);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,85 @@
+package com.vaultai.app;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单条记录的加解密，密钥已解锁并缓存（稳态）。
+ *
+ * 状态在所有线程间共享，用 -PjmhThreads=N 运行可以观察同一个 PasswordManager 上的并发开销。
+ * v2 记录的逐盐派生密钥在第一次调用后命中 DerivedKeyCache，这里测的是命中后的耗时。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RecordCryptoBenchmark {
+    @Param({"0", "256", "4096"})
+    public int noteLength;
+
+    private JvmContext context;
+    private PasswordManager passwordManager;
+    private PasswordEntry entry;
+    private String key;
+    private String v3Record;
+    private String v2Record;
+
+    @Setup
+    public void setUp() throws Exception {
+        context = new JvmContext();
+        passwordManager = BenchData.newVault(context, 1, noteLength);
+        entry = BenchData.entry(0, noteLength);
+        key = passwordManager.buildKey(entry.getSiteName(), entry.getUsername());
+        v3Record = passwordManager.encryptData(entry.toString());
+        v2Record = passwordManager.encryptForExportV2(entry.toString());
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.delete();
+    }
+
+    @Benchmark
+    public PasswordEntry readEntryV5() throws Exception {
+        return passwordManager.readEntry(key);
+    }
+
+    @Benchmark
+    public EntryMetadata readMetadataV5() throws Exception {
+        return passwordManager.readMetadata(key);
+    }
+
+    @Benchmark
+    public boolean savePasswordV5() {
+        return passwordManager.savePassword(entry);
+    }
+
+    @Benchmark
+    public String encryptV3() throws Exception {
+        return passwordManager.encryptData(entry.toString());
+    }
+
+    @Benchmark
+    public PasswordEntry decryptV3() throws Exception {
+        return passwordManager.decryptEntry(v3Record);
+    }
+
+    @Benchmark
+    public PasswordEntry decryptV2() throws Exception {
+        return passwordManager.decryptEntry(v2Record);
+    }
+}
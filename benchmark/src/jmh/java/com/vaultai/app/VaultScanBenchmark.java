@@ -0,0 +1,93 @@
+package com.vaultai.app;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 整库操作：主界面加载列表（只解密元数据）、解密全部条目，以及按解密线程数展开的流式导出。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VaultScanBenchmark {
+    @Param({"1000", "10000"})
+    public int vaultSize;
+
+    @Param({"64"})
+    public int noteLength;
+
+    @Param({"1", "2", "4"})
+    public int workers;
+
+    private JvmContext context;
+    private PasswordManager passwordManager;
+
+    @Setup
+    public void setUp() throws Exception {
+        context = new JvmContext();
+        passwordManager = BenchData.newVault(context, vaultSize, noteLength);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.delete();
+    }
+
+    /**
+     * 与 MainActivity.loadPasswordList 相同的路径：逐条 readMetadata，单线程。与 workers 无关。
+     */
+    @Benchmark
+    public void loadMetadata(Blackhole bh) throws Exception {
+        List<String> keys = passwordManager.getAllKeys();
+        for (int i = 0; i < keys.size(); i++) {
+            bh.consume(passwordManager.readMetadata(keys.get(i)));
+        }
+    }
+
+    @Benchmark
+    public List<PasswordEntry> getAllPasswords() {
+        return passwordManager.getAllPasswords();
+    }
+
+    /**
+     * 用 workers 个解密线程导出到一个丢弃输出的流，包含导出密钥的一次 PBKDF2 派生。
+     */
+    @Benchmark
+    public long exportPipeline() throws Exception {
+        VaultExport.Writer writer = passwordManager.openExportWriter(new NullOutputStream());
+        try {
+            return new ExportPipeline(passwordManager, workers).run(writer).getWritten();
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static final class NullOutputStream extends OutputStream {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+        }
+    }
+}
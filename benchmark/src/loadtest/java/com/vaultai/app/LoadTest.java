@@ -0,0 +1,412 @@
+package com.vaultai.app;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * 大密码库负载测试：按格式和条目数生成合成密码库，运行真实的端到端流程，
+ * 记录每个流程的 p50/p99 延迟和峰值堆内存，并与预算比较，超出预算时以非零状态退出。
+ *
+ * 流程与界面上的操作一一对应：解锁、解密全部条目、加载列表（元数据 + 搜索索引）、搜索、
+ * 导出、覆盖导入、批量删除和修改主密码。后三个会修改密码库，每个样本都在模板的新副本上运行。
+ *
+ * 参数（均可省略）：
+ *   --sizes=1000,10000,100000  --formats=legacy,v2,v3,v5  --samples=5  --queries=200
+ *   --v2-max=1000  --note-length=64  --budgets=<properties>  --out=<json>
+ */
+public final class LoadTest {
+    private static final String NEW_MASTER_PASSWORD = "a brand new master password";
+    // 批量删除选中的比例
+    private static final int BULK_DELETE_EVERY = 10;
+
+    private interface Step {
+        void run() throws Exception;
+    }
+
+    /**
+     * 一个流程的全部样本。
+     */
+    static final class FlowStats {
+        final String format;
+        final int size;
+        final String flow;
+        private final List<Long> nanos = new ArrayList<>();
+        private long peakHeapBytes;
+
+        FlowStats(String format, int size, String flow) {
+            this.format = format;
+            this.size = size;
+            this.flow = flow;
+        }
+
+        void measure(Step step) throws Exception {
+            resetPeakHeap();
+            long start = System.nanoTime();
+            step.run();
+            nanos.add(System.nanoTime() - start);
+            peakHeapBytes = Math.max(peakHeapBytes, peakHeap());
+        }
+
+        double percentileMillis(double p) {
+            List<Long> sorted = new ArrayList<>(nanos);
+            Collections.sort(sorted);
+            int rank = (int) Math.ceil(p * sorted.size());
+            return sorted.get(Math.max(0, rank - 1)) / 1e6;
+        }
+
+        double peakHeapMb() {
+            return peakHeapBytes / (1024.0 * 1024.0);
+        }
+
+        int samples() {
+            return nanos.size();
+        }
+    }
+
+    private final List<Integer> sizes;
+    private final List<SyntheticVault.Format> formats;
+    private final int samples;
+    private final int queries;
+    private final int v2Max;
+    private final int noteLength;
+    private final List<FlowStats> results = new ArrayList<>();
+    private final File workDir;
+
+    private LoadTest(Map<String, String> options) throws IOException {
+        sizes = new ArrayList<>();
+        for (String s : option(options, "sizes", "1000,10000,100000").split(",")) {
+            sizes.add(Integer.parseInt(s.trim()));
+        }
+        formats = new ArrayList<>();
+        Map<String, SyntheticVault.Format> byName = SyntheticVault.formatsByName();
+        for (String s : option(options, "formats", "legacy,v2,v3,v5").split(",")) {
+            SyntheticVault.Format f = byName.get(s.trim().toLowerCase());
+            if (f == null) throw new IllegalArgumentException("Unknown format " + s);
+            formats.add(f);
+        }
+        samples = Integer.parseInt(option(options, "samples", "5"));
+        queries = Integer.parseInt(option(options, "queries", "200"));
+        v2Max = Integer.parseInt(option(options, "v2-max", "1000"));
+        noteLength = Integer.parseInt(option(options, "note-length", "64"));
+        workDir = java.nio.file.Files.createTempDirectory("vaultai-loadtest").toFile();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseArgs(args);
+        Pkcs7PaddingProvider.install();
+        LoadTest test = new LoadTest(options);
+        try {
+            test.runAll();
+        } finally {
+            test.workDir.delete();
+        }
+        test.printReport();
+        String out = options.get("out");
+        if (out != null) {
+            test.writeJson(new File(out));
+        }
+        String budgets = options.get("budgets");
+        if (budgets != null) {
+            List<String> violations = test.checkBudgets(loadProperties(new File(budgets)));
+            if (!violations.isEmpty()) {
+                System.out.println();
+                System.out.println("超出预算 (" + violations.size() + "):");
+                for (String v : violations) {
+                    System.out.println("  " + v);
+                }
+                System.exit(1);
+            }
+            System.out.println("全部流程均在预算内");
+        }
+    }
+
+    private void runAll() throws Exception {
+        for (SyntheticVault.Format format : formats) {
+            for (int size : sizes) {
+                if (format == SyntheticVault.Format.V2 && size > v2Max) {
+                    // v2 每条记录单独运行 PBKDF2，生成和读取都与条目数成正比，1 万条以上需要数小时
+                    System.out.println("跳过 v2/" + size + "（超过 --v2-max=" + v2Max + "）");
+                    continue;
+                }
+                long start = System.nanoTime();
+                SyntheticVault vault = SyntheticVault.generate(format, size, noteLength);
+                System.out.println("生成 " + vault + " 用时 " + (System.nanoTime() - start) / 1000000L + " ms");
+                try {
+                    runFlows(vault);
+                } finally {
+                    vault.delete();
+                }
+            }
+        }
+    }
+
+    private void runFlows(SyntheticVault vault) throws Exception {
+        final String password = BenchData.MASTER_PASSWORD;
+        final File exportFile = new File(workDir, "export-" + vault.format + "-" + vault.size + ".vaex");
+        final SyntheticVault.Opened opened = vault.open();
+        final PasswordManager pm = opened.passwordManager;
+        try {
+            FlowStats unlock = stats(vault, "unlock");
+            for (int i = 0; i < samples; i++) {
+                pm.lock();
+                unlock.measure(() -> {
+                    if (!pm.unlock(password)) throw new IllegalStateException("unlock failed");
+                });
+            }
+
+            FlowStats getAll = stats(vault, "getAllPasswords");
+            for (int i = 0; i < samples; i++) {
+                getAll.measure(() -> expectCount(pm.getAllPasswords().size(), vault.size, "getAllPasswords"));
+            }
+
+            // 与 MainActivity 加载列表相同：逐条解密元数据并建立搜索索引
+            final SearchIndex[] index = new SearchIndex[1];
+            FlowStats loadList = stats(vault, "loadList");
+            for (int i = 0; i < samples; i++) {
+                loadList.measure(() -> {
+                    SearchIndex idx = new SearchIndex();
+                    SearchIndex.Editor editor = idx.edit();
+                    for (String key : pm.getAllKeys()) {
+                        EntryMetadata m = pm.readMetadata(key);
+                        if (m != null) {
+                            editor.put(key, m.getSiteName(), m.getUsername());
+                        }
+                    }
+                    editor.commit();
+                    expectCount(idx.size(), vault.size, "loadList");
+                    index[0] = idx;
+                });
+            }
+
+            FlowStats filter = stats(vault, "filterPasswords");
+            for (final String query : queries(queries)) {
+                filter.measure(() -> index[0].search(query, null));
+            }
+
+            FlowStats export = stats(vault, "export");
+            for (int i = 0; i < samples; i++) {
+                export.measure(() -> {
+                    OutputStream out = new BufferedOutputStream(new FileOutputStream(exportFile));
+                    VaultExport.Writer writer = pm.openExportWriter(out);
+                    try {
+                        ExportPipeline.Metrics metrics = new ExportPipeline(pm).run(writer);
+                        expectCount((int) metrics.getWritten(), vault.size, "export");
+                    } finally {
+                        writer.close();
+                    }
+                });
+            }
+        } finally {
+            opened.close();
+        }
+
+        FlowStats importOverwrite = stats(vault, "importOverwrite");
+        for (int i = 0; i < samples; i++) {
+            final SyntheticVault.Opened copy = vault.open();
+            try {
+                importOverwrite.measure(() -> {
+                    PasswordManager p = copy.passwordManager;
+                    VaultExport.Reader reader = p.openExportReader(
+                            new BufferedInputStream(new FileInputStream(exportFile)));
+                    VaultImporter.Result r = new VaultImporter(p).importEntries(reader, true);
+                    expectCount(r.overwritten, vault.size, "importOverwrite");
+                });
+            } finally {
+                copy.close();
+            }
+        }
+
+        FlowStats bulkDelete = stats(vault, "bulkDelete");
+        for (int i = 0; i < samples; i++) {
+            final SyntheticVault.Opened copy = vault.open();
+            try {
+                final List<String> selected = new ArrayList<>();
+                List<String> keys = copy.passwordManager.getAllKeys();
+                for (int k = 0; k < keys.size(); k += BULK_DELETE_EVERY) {
+                    selected.add(keys.get(k));
+                }
+                final List<EntryMetadata> entries = new ArrayList<>(selected.size());
+                for (String key : selected) {
+                    String[] parts = key.replace("password_", "").split("\\|", -1);
+                    entries.add(new EntryMetadata(parts[0], parts.length > 1 ? parts[1] : ""));
+                }
+                bulkDelete.measure(() -> {
+                    // 与 MainActivity.onBulkDeleteClicked 相同，一次提交删除全部所选条目
+                    int deleted = copy.passwordManager.deletePasswords(entries);
+                    expectCount(deleted, selected.size(), "bulkDelete");
+                });
+            } finally {
+                copy.close();
+            }
+        }
+
+        // 旧格式的密码库改密时会先把全部条目迁移到 v5
+        FlowStats change = stats(vault, "changeMasterPassword");
+        for (int i = 0; i < samples; i++) {
+            final SyntheticVault.Opened copy = vault.open();
+            try {
+                change.measure(() -> {
+                    if (!copy.passwordManager.changeMasterPassword(password, NEW_MASTER_PASSWORD, null)) {
+                        throw new IllegalStateException("changeMasterPassword failed");
+                    }
+                });
+            } finally {
+                copy.close();
+            }
+        }
+        exportFile.delete();
+    }
+
+    private FlowStats stats(SyntheticVault vault, String flow) {
+        FlowStats s = new FlowStats(vault.format.name().toLowerCase(), vault.size, flow);
+        results.add(s);
+        System.gc();
+        return s;
+    }
+
+    private static void expectCount(int actual, int expected, String flow) {
+        if (actual != expected) {
+            throw new IllegalStateException(flow + ": expected " + expected + " but got " + actual);
+        }
+    }
+
+    /**
+     * 模拟逐字输入的查询：网站名前缀、用户名、域名片段和不存在的词。
+     */
+    private static List<String> queries(int count) {
+        String[] seeds = {"site-1", "site-42.ex", "user7", "example", "com", "zzz", "网站", "s"};
+        List<String> list = new ArrayList<>(count);
+        for (int i = 0; list.size() < count; i++) {
+            String seed = seeds[i % seeds.length];
+            list.add(seed.substring(0, 1 + (i / seeds.length) % seed.length()));
+        }
+        return list;
+    }
+
+    private void printReport() {
+        System.out.println();
+        System.out.println(String.format(Locale.US, "%-8s %8s %-22s %7s %11s %11s %11s",
+                "format", "size", "flow", "samples", "p50(ms)", "p99(ms)", "heap(MB)"));
+        for (FlowStats s : results) {
+            System.out.println(String.format(Locale.US, "%-8s %8d %-22s %7d %11.2f %11.2f %11.1f",
+                    s.format, s.size, s.flow, s.samples(), s.percentileMillis(0.5), s.percentileMillis(0.99),
+                    s.peakHeapMb()));
+        }
+    }
+
+    private void writeJson(File file) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null) parent.mkdirs();
+        try (Writer w = new java.io.OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            w.write("[\n");
+            for (int i = 0; i < results.size(); i++) {
+                FlowStats s = results.get(i);
+                w.write(String.format(Locale.US,
+                        "  {\"format\": \"%s\", \"size\": %d, \"flow\": \"%s\", \"samples\": %d, "
+                                + "\"p50Ms\": %.3f, \"p99Ms\": %.3f, \"peakHeapMb\": %.1f}%s\n",
+                        s.format, s.size, s.flow, s.samples(), s.percentileMillis(0.5), s.percentileMillis(0.99),
+                        s.peakHeapMb(), i + 1 < results.size() ? "," : ""));
+            }
+            w.write("]\n");
+        }
+        System.out.println("结果已写入 " + file);
+    }
+
+    /**
+     * 预算按 [格式.][条目数.]流程.指标 查找，越具体的优先，最后是 条目数.指标，例如 v3.100000.export.p99Ms、
+     * 10000.getAllPasswords.p99Ms、unlock.p99Ms、100000.peakHeapMb。没有配置的指标不检查。
+     */
+    private List<String> checkBudgets(Properties budgets) {
+        List<String> violations = new ArrayList<>();
+        for (FlowStats s : results) {
+            check(violations, budgets, s, "p99Ms", s.percentileMillis(0.99));
+            check(violations, budgets, s, "peakHeapMb", s.peakHeapMb());
+        }
+        return violations;
+    }
+
+    private static void check(List<String> violations, Properties budgets, FlowStats s, String metric, double value) {
+        String[] candidates = {
+                s.format + "." + s.size + "." + s.flow + "." + metric,
+                s.size + "." + s.flow + "." + metric,
+                s.flow + "." + metric,
+                s.size + "." + metric,
+        };
+        for (String key : candidates) {
+            String limit = budgets.getProperty(key);
+            if (limit == null) continue;
+            double max = Double.parseDouble(limit.trim());
+            if (value > max) {
+                violations.add(String.format(Locale.US, "%s/%d %s %s = %.2f > %s (%s)",
+                        s.format, s.size, s.flow, metric, value, limit.trim(), key));
+            }
+            return;
+        }
+    }
+
+    // 堆内存峰值：各堆内存池峰值之和，是同一时刻占用的上界近似
+
+    private static void resetPeakHeap() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    private static long peakHeap() {
+        long total = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) {
+                total += pool.getPeakUsage().getUsed();
+            }
+        }
+        return total;
+    }
+
+    private static Map<String, String> parseArgs(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value but got " + arg
+                        + "; known options: " + Arrays.asList("sizes", "formats", "samples", "queries",
+                        "v2-max", "note-length", "budgets", "out"));
+            }
+            int eq = arg.indexOf('=');
+            options.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        return options;
+    }
+
+    private static String option(Map<String, String> options, String name, String defaultValue) {
+        String value = options.get(name);
+        return value != null && !value.isEmpty() ? value : defaultValue;
+    }
+
+    private static Properties loadProperties(File file) throws IOException {
+        Properties p = new Properties();
+        try (Reader r = new java.io.InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+            p.load(r);
+        }
+        return p;
+    }
+}
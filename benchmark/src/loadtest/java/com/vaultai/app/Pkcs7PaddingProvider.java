@@ -0,0 +1,122 @@
+package com.vaultai.app;
+
+import java.security.AlgorithmParameters;
+import java.security.GeneralSecurityException;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.InvalidKeyException;
+import java.security.Key;
+import java.security.NoSuchAlgorithmException;
+import java.security.Provider;
+import java.security.SecureRandom;
+import java.security.Security;
+import java.security.spec.AlgorithmParameterSpec;
+
+import javax.crypto.BadPaddingException;
+import javax.crypto.Cipher;
+import javax.crypto.CipherSpi;
+import javax.crypto.IllegalBlockSizeException;
+import javax.crypto.NoSuchPaddingException;
+import javax.crypto.ShortBufferException;
+
+/**
+ * 旧版记录使用 Android 上的 "AES/CBC/PKCS7Padding"，桌面 JDK 只提供同义的 PKCS5Padding
+ * （16 字节分组时两者完全相同）。这个 provider 把前者转交给后者，让 JVM 上也能解密旧版记录。
+ */
+public final class Pkcs7PaddingProvider extends Provider {
+    private static final long serialVersionUID = 1L;
+    private static final String TRANSFORMATION = "AES/CBC/PKCS7Padding";
+
+    private Pkcs7PaddingProvider() {
+        super("VaultAIPkcs7", "1.0", "AES/CBC/PKCS7Padding via PKCS5Padding");
+        put("Cipher." + TRANSFORMATION, AesCbcPkcs7.class.getName());
+    }
+
+    /**
+     * 在 JDK 不支持该变换时注册 provider，可重复调用。
+     */
+    static synchronized void install() {
+        try {
+            Cipher.getInstance(TRANSFORMATION);
+        } catch (NoSuchAlgorithmException | NoSuchPaddingException e) {
+            Security.addProvider(new Pkcs7PaddingProvider());
+        }
+    }
+
+    public static final class AesCbcPkcs7 extends CipherSpi {
+        private final Cipher delegate;
+
+        public AesCbcPkcs7() throws GeneralSecurityException {
+            delegate = Cipher.getInstance("AES/CBC/PKCS5Padding");
+        }
+
+        @Override
+        protected void engineSetMode(String mode) throws NoSuchAlgorithmException {
+            if (!"CBC".equalsIgnoreCase(mode)) throw new NoSuchAlgorithmException(mode);
+        }
+
+        @Override
+        protected void engineSetPadding(String padding) throws NoSuchPaddingException {
+            if (!"PKCS7Padding".equalsIgnoreCase(padding)) throw new NoSuchPaddingException(padding);
+        }
+
+        @Override
+        protected int engineGetBlockSize() {
+            return delegate.getBlockSize();
+        }
+
+        @Override
+        protected int engineGetOutputSize(int inputLen) {
+            return delegate.getOutputSize(inputLen);
+        }
+
+        @Override
+        protected byte[] engineGetIV() {
+            return delegate.getIV();
+        }
+
+        @Override
+        protected AlgorithmParameters engineGetParameters() {
+            return delegate.getParameters();
+        }
+
+        @Override
+        protected void engineInit(int opmode, Key key, SecureRandom random) throws InvalidKeyException {
+            delegate.init(opmode, key, random);
+        }
+
+        @Override
+        protected void engineInit(int opmode, Key key, AlgorithmParameterSpec params, SecureRandom random)
+                throws InvalidKeyException, InvalidAlgorithmParameterException {
+            delegate.init(opmode, key, params, random);
+        }
+
+        @Override
+        protected void engineInit(int opmode, Key key, AlgorithmParameters params, SecureRandom random)
+                throws InvalidKeyException, InvalidAlgorithmParameterException {
+            delegate.init(opmode, key, params, random);
+        }
+
+        @Override
+        protected byte[] engineUpdate(byte[] input, int inputOffset, int inputLen) {
+            return delegate.update(input, inputOffset, inputLen);
+        }
+
+        @Override
+        protected int engineUpdate(byte[] input, int inputOffset, int inputLen, byte[] output, int outputOffset)
+                throws ShortBufferException {
+            return delegate.update(input, inputOffset, inputLen, output, outputOffset);
+        }
+
+        @Override
+        protected byte[] engineDoFinal(byte[] input, int inputOffset, int inputLen)
+                throws IllegalBlockSizeException, BadPaddingException {
+            return delegate.doFinal(input, inputOffset, inputLen);
+        }
+
+        @Override
+        protected int engineDoFinal(byte[] input, int inputOffset, int inputLen, byte[] output, int outputOffset)
+                throws ShortBufferException, IllegalBlockSizeException, BadPaddingException {
+            return delegate.doFinal(input, inputOffset, inputLen, output, outputOffset);
+        }
+    }
+}
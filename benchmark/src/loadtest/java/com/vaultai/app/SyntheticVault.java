@@ -0,0 +1,156 @@
+package com.vaultai.app;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Base64;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * 指定存储格式和条目数的合成密码库。生成一次模板（认证信息和密码库文件），
+ * 之后每次 open() 都复制出一个独立的副本，破坏性的流程（导入、删除、改密）每个样本都从同一起点开始。
+ */
+final class SyntheticVault {
+    private static final String AUTH_PREFS_NAME = "VaultAIAuth";
+    private static final String PREFS_NAME = "VaultAIPasswords";
+
+    enum Format {
+        // 早期版本：AES/CBC，密钥直接取主密码字节
+        LEGACY,
+        // 每条记录单独加盐，每条都要运行一次 PBKDF2
+        V2,
+        // 主密码派生的 KEK 直接加密条目
+        V3,
+        // 当前格式：数据密钥加密，元数据和机密分开存储
+        V5
+    }
+
+    final Format format;
+    final int size;
+    final int noteLength;
+    private final JvmContext template;
+
+    private SyntheticVault(Format format, int size, int noteLength, JvmContext template) {
+        this.format = format;
+        this.size = size;
+        this.noteLength = noteLength;
+        this.template = template;
+    }
+
+    static SyntheticVault generate(Format format, int size, int noteLength) throws Exception {
+        JvmContext template = new JvmContext();
+        if (format == Format.V5) {
+            BenchData.newVault(template, size, noteLength);
+            return new SyntheticVault(format, size, noteLength, template);
+        }
+        // 旧版记录先写入 SharedPreferences，由 PasswordManager 构造时原样迁入密码库文件，与升级安装的路径一致
+        // v3 记录用解锁时派生的 KEK 加密，先解锁以生成盐、校验值和数据密钥
+        PasswordManager encoder = new PasswordManager(template);
+        if (!encoder.unlock(BenchData.MASTER_PASSWORD)) {
+            throw new IllegalStateException("unlock failed");
+        }
+        SharedPreferences.Editor prefs = template.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).edit();
+        List<PasswordEntry> entries = BenchData.entries(size, noteLength);
+        for (PasswordEntry entry : entries) {
+            String text = entry.toString();
+            String stored;
+            switch (format) {
+                case LEGACY:
+                    stored = encryptLegacy(text, BenchData.MASTER_PASSWORD);
+                    break;
+                case V2:
+                    stored = encoder.encryptForExportV2(text);
+                    break;
+                default:
+                    stored = encoder.encryptData(text);
+                    break;
+            }
+            prefs.putString(encoder.buildKey(entry.getSiteName(), entry.getUsername()), stored);
+        }
+        prefs.commit();
+        new PasswordManager(template);
+        return new SyntheticVault(format, size, noteLength, template);
+    }
+
+    /**
+     * 复制模板，返回一个已解锁的 PasswordManager。调用方用完后调用 JvmContext.delete()。
+     */
+    Opened open() throws IOException {
+        JvmContext context = new JvmContext();
+        SharedPreferences.Editor auth = context.getSharedPreferences(AUTH_PREFS_NAME, Context.MODE_PRIVATE).edit();
+        for (Map.Entry<String, ?> e : template.getSharedPreferences(AUTH_PREFS_NAME, Context.MODE_PRIVATE)
+                .getAll().entrySet()) {
+            auth.putString(e.getKey(), (String) e.getValue());
+        }
+        auth.commit();
+        File[] files = template.getFilesDir().listFiles();
+        if (files != null) {
+            for (File f : files) {
+                Files.copy(f.toPath(), new File(context.getFilesDir(), f.getName()).toPath());
+            }
+        }
+        PasswordManager pm = new PasswordManager(context);
+        if (!pm.unlock(BenchData.MASTER_PASSWORD)) {
+            throw new IllegalStateException("unlock failed for " + this);
+        }
+        return new Opened(context, pm);
+    }
+
+    void delete() {
+        template.delete();
+    }
+
+    @Override
+    public String toString() {
+        return format.name().toLowerCase() + "/" + size;
+    }
+
+    /**
+     * 旧版格式：Base64([iv:16][AES/CBC 密文])，密钥为主密码 UTF-8 字节截断或补零到 16 字节。
+     */
+    private static String encryptLegacy(String data, String password) throws Exception {
+        byte[] key = new byte[16];
+        byte[] passwordBytes = password.getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(passwordBytes, 0, key, 0, Math.min(key.length, passwordBytes.length));
+        byte[] iv = CryptoContext.randomBytes(16);
+        Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, "AES"), new IvParameterSpec(iv));
+        byte[] encrypted = cipher.doFinal(data.getBytes(StandardCharsets.UTF_8));
+        byte[] combined = new byte[iv.length + encrypted.length];
+        System.arraycopy(iv, 0, combined, 0, iv.length);
+        System.arraycopy(encrypted, 0, combined, iv.length, encrypted.length);
+        return Base64.encodeToString(combined, Base64.DEFAULT);
+    }
+
+    static final class Opened {
+        final JvmContext context;
+        final PasswordManager passwordManager;
+
+        Opened(JvmContext context, PasswordManager passwordManager) {
+            this.context = context;
+            this.passwordManager = passwordManager;
+        }
+
+        void close() {
+            context.delete();
+        }
+    }
+
+    static Map<String, Format> formatsByName() {
+        Map<String, Format> formats = new HashMap<>();
+        for (Format f : Format.values()) {
+            formats.put(f.name().toLowerCase(), f);
+        }
+        return formats;
+    }
+}
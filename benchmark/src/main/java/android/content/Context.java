@@ -0,0 +1,16 @@
+package android.content;
+
+import java.io.File;
+
+/**
+ * JVM 上的替身，只包含 PasswordManager 等非界面类用到的方法。
+ */
+public abstract class Context {
+    public static final int MODE_PRIVATE = 0;
+
+    public abstract Context getApplicationContext();
+
+    public abstract SharedPreferences getSharedPreferences(String name, int mode);
+
+    public abstract File getFilesDir();
+}
@@ -0,0 +1,32 @@
+package android.util;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * JVM 上的替身，基于 java.util.Base64。DEFAULT 与 Android 一样每 76 个字符换行并以换行结尾，
+ * 保证基准测试中的存储格式和长度与设备上一致。
+ */
+public class Base64 {
+    public static final int DEFAULT = 0;
+    public static final int NO_PADDING = 1;
+    public static final int NO_WRAP = 2;
+
+    private static final java.util.Base64.Encoder WRAPPING =
+            java.util.Base64.getMimeEncoder(76, new byte[]{'\n'});
+
+    private Base64() {
+    }
+
+    public static String encodeToString(byte[] input, int flags) {
+        java.util.Base64.Encoder encoder = (flags & NO_WRAP) != 0 ? java.util.Base64.getEncoder() : WRAPPING;
+        if ((flags & NO_PADDING) != 0) {
+            encoder = encoder.withoutPadding();
+        }
+        String encoded = encoder.encodeToString(input);
+        return (flags & NO_WRAP) != 0 || encoded.isEmpty() ? encoded : encoded + "\n";
+    }
+
+    public static byte[] decode(String str, int flags) {
+        return java.util.Base64.getMimeDecoder().decode(str.getBytes(StandardCharsets.US_ASCII));
+    }
+}
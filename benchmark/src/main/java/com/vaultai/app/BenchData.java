@@ -0,0 +1,62 @@
+package com.vaultai.app;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 生成确定性的测试条目，相同参数每次得到相同的数据，便于不同提交之间对比。
+ */
+final class BenchData {
+    static final String MASTER_PASSWORD = "correct horse battery staple";
+
+    private static final String ALPHABET = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789网站用户备注";
+
+    private BenchData() {
+    }
+
+    /**
+     * 第 i 个条目。noteLength 控制备注长度（字符数），用来改变单条记录的大小。
+     */
+    static PasswordEntry entry(int i, int noteLength) {
+        Random random = new Random(i);
+        return new PasswordEntry("site-" + i + ".example.com", "user" + (i % 97) + "@example.com",
+                text(random, 20), text(random, noteLength));
+    }
+
+    static List<PasswordEntry> entries(int count, int noteLength) {
+        List<PasswordEntry> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            entries.add(entry(i, noteLength));
+        }
+        return entries;
+    }
+
+    /**
+     * 新建一个临时目录中的密码库，解锁并写入 size 个 v5 条目。
+     */
+    static PasswordManager newVault(JvmContext context, int size, int noteLength) {
+        PasswordManager pm = new PasswordManager(context);
+        if (!pm.unlock(MASTER_PASSWORD)) {
+            throw new IllegalStateException("unlock failed");
+        }
+        for (int from = 0; from < size; from += VaultImporter.BATCH_SIZE) {
+            List<PasswordEntry> batch = new ArrayList<>();
+            for (int i = from; i < Math.min(size, from + VaultImporter.BATCH_SIZE); i++) {
+                batch.add(entry(i, noteLength));
+            }
+            if (!pm.savePasswordsBatch(batch)) {
+                throw new IllegalStateException("populate failed");
+            }
+        }
+        return pm;
+    }
+
+    private static String text(Random random, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        }
+        return sb.toString();
+    }
+}
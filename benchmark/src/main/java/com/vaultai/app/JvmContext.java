@@ -0,0 +1,162 @@
+package com.vaultai.app;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 基准测试用的 Context：SharedPreferences 保存在内存中，文件目录是一个新建的临时目录。
+ */
+final class JvmContext extends Context {
+    private final File filesDir;
+    private final Map<String, Prefs> prefs = new HashMap<>();
+
+    JvmContext() throws IOException {
+        this.filesDir = Files.createTempDirectory("vaultai-bench").toFile();
+    }
+
+    @Override
+    public Context getApplicationContext() {
+        return this;
+    }
+
+    @Override
+    public synchronized SharedPreferences getSharedPreferences(String name, int mode) {
+        Prefs p = prefs.get(name);
+        if (p == null) {
+            p = new Prefs();
+            prefs.put(name, p);
+        }
+        return p;
+    }
+
+    @Override
+    public File getFilesDir() {
+        return filesDir;
+    }
+
+    /**
+     * 删除临时目录。之后不能再使用这个 Context 创建 PasswordManager。
+     */
+    void delete() {
+        File[] files = filesDir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        filesDir.delete();
+    }
+
+    static final class Prefs implements SharedPreferences {
+        private final Map<String, Object> values = new HashMap<>();
+
+        @Override
+        public synchronized Map<String, ?> getAll() {
+            return new HashMap<>(values);
+        }
+
+        @Override
+        public synchronized String getString(String key, String defValue) {
+            Object v = values.get(key);
+            return v != null ? (String) v : defValue;
+        }
+
+        @Override
+        public synchronized int getInt(String key, int defValue) {
+            Object v = values.get(key);
+            return v != null ? (Integer) v : defValue;
+        }
+
+        @Override
+        public synchronized long getLong(String key, long defValue) {
+            Object v = values.get(key);
+            return v != null ? (Long) v : defValue;
+        }
+
+        @Override
+        public synchronized boolean getBoolean(String key, boolean defValue) {
+            Object v = values.get(key);
+            return v != null ? (Boolean) v : defValue;
+        }
+
+        @Override
+        public synchronized boolean contains(String key) {
+            return values.containsKey(key);
+        }
+
+        @Override
+        public Editor edit() {
+            return new PrefsEditor();
+        }
+
+        private final class PrefsEditor implements Editor {
+            // 值为 null 表示删除
+            private final Map<String, Object> pending = new HashMap<>();
+            private boolean clear;
+
+            @Override
+            public Editor putString(String key, String value) {
+                pending.put(key, value);
+                return this;
+            }
+
+            @Override
+            public Editor putInt(String key, int value) {
+                pending.put(key, value);
+                return this;
+            }
+
+            @Override
+            public Editor putLong(String key, long value) {
+                pending.put(key, value);
+                return this;
+            }
+
+            @Override
+            public Editor putBoolean(String key, boolean value) {
+                pending.put(key, value);
+                return this;
+            }
+
+            @Override
+            public Editor remove(String key) {
+                pending.put(key, null);
+                return this;
+            }
+
+            @Override
+            public Editor clear() {
+                clear = true;
+                return this;
+            }
+
+            @Override
+            public boolean commit() {
+                synchronized (Prefs.this) {
+                    if (clear) {
+                        values.clear();
+                    }
+                    for (Map.Entry<String, Object> e : pending.entrySet()) {
+                        if (e.getValue() == null) {
+                            values.remove(e.getKey());
+                        } else {
+                            values.put(e.getKey(), e.getValue());
+                        }
+                    }
+                }
+                return true;
+            }
+
+            @Override
+            public void apply() {
+                commit();
+            }
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.vaultai.app;
+
+import java.io.File;
+
+/**
+ * 把从设备上取出的 trace.ring 渲染成文本，用于问题反馈：./gradlew :benchmark:decodeTrace -Ptrace=<文件>
+ */
+public final class TraceDump {
+    private TraceDump() {
+    }
+
+    public static void main(String[] args) {
+        if (args.length != 1) {
+            System.err.println("Usage: TraceDump <trace.ring>");
+            System.exit(2);
+        }
+        System.out.print(VaultTrace.decode(new File(args[0]), 0));
+    }
+}